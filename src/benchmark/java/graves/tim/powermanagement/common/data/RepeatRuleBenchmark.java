@@ -0,0 +1,65 @@
+package graves.tim.powermanagement.common.data;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * How long it takes to work out the next repeat of an event whose previous run
+ * time is well in the past (e.g. after the server has been down), for each of
+ * the repeat types and a range of gaps. The catch up should cost about the same
+ * whatever the gap, the stepping version is the old one repeat at a time
+ * approach for comparison, with a SECOND repeat and a gap of a year that's
+ * around 31 million steps which takes seconds a call, so to skip it use
+ * -Dbenchmarks=RepeatRuleBenchmark.catchUp
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RepeatRuleBenchmark {
+	@Param({ "SECOND", "MINUTE", "HOUR", "DAY", "WEEK", "MONTH" })
+	private RepeatType repeatType;
+	// how long ago the previous run should have happened
+	@Param({ "PT1H", "P1D", "P30D", "P365D" })
+	private String gap;
+	private RepeatRule repeatRule;
+	private ZonedDateTime previousScheduledRunTime;
+
+	@Setup
+	public void setup() {
+		// repeats forever so the rule is not changed by the calculation and can be
+		// reused
+		repeatRule = RepeatRule.builder().repeatType(repeatType).build();
+		previousScheduledRunTime = ZonedDateTime.now().minus(Duration.parse(gap));
+	}
+
+	@Benchmark
+	public ZonedDateTime catchUp() {
+		return repeatRule.calculateNextRepeat(previousScheduledRunTime);
+	}
+
+	@Benchmark
+	public ZonedDateTime stepping() {
+		ZonedDateTime now = ZonedDateTime.now(previousScheduledRunTime.getZone());
+		ZonedDateTime nextRunTime = previousScheduledRunTime;
+		while ((nextRunTime != null) && nextRunTime.isBefore(now)) {
+			nextRunTime = repeatRule.calculateNextRepeat(nextRunTime, false);
+		}
+		return nextRunTime;
+	}
+}
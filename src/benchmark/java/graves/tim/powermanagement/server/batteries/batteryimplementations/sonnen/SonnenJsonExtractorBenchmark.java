@@ -0,0 +1,91 @@
+package graves.tim.powermanagement.server.batteries.batteryimplementations.sonnen;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jakarta.json.Json;
+import jakarta.json.JsonReader;
+import jakarta.json.JsonReaderFactory;
+
+/**
+ * Compares pulling a single value out of a Sonnen response with the streaming
+ * extractor against what we used to do, build the whole JsonObject and get the
+ * value from that. For configuration values the old way then turned the value
+ * into text and stripped the quotes off. The baselines use a shared reader
+ * factory so they are not paying for the provider lookup on each call
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SonnenJsonExtractorBenchmark {
+	private final static String CHARGE_LEVEL = "USOC";
+	private final static String SETTING_NAME = "EM_USOC";
+	private final static String STRING_QUOTE = "\"";
+	// roughly what a /latestdata response looks like
+	private final static byte[] LATEST_DATA = ("{\"Consumption_Avg\":563,\"Consumption_W\":541,\"Fac\":50.0,"
+			+ "\"FlowConsumptionBattery\":true,\"FlowConsumptionGrid\":false,\"FlowConsumptionProduction\":false,"
+			+ "\"FlowGridBattery\":false,\"FlowProductionBattery\":false,\"FlowProductionGrid\":false,\"GridFeedIn_W\":-5,"
+			+ "\"IsSystemInstalled\":1,\"OperatingMode\":\"2\",\"Pac_total_W\":536,\"Production_W\":0,\"RSOC\":52,"
+			+ "\"RemainingCapacity_Wh\":5202,\"SystemStatus\":\"OnGrid\",\"Timestamp\":\"2023-01-01 12:00:00\","
+			+ "\"USOC\":49,\"Uac\":239,\"Ubat\":54,\"dischargeNotAllowed\":false,\"generator_autostart\":false,"
+			+ "\"ic_status\":{\"DC Shutdown Reason\":{\"Critical BMS Alarm\":false,\"Electrolyte Leakage\":false,"
+			+ "\"Error condition\":false},\"Eclipse Led\":{\"Blinking Red\":false,\"Pulsing Green\":false},"
+			+ "\"nrbatterymodules\":4,\"secondssincefullcharge\":3600,\"statebms\":\"ready\","
+			+ "\"statecorecontrolmodule\":\"ongrid\",\"stateinverter\":\"running\","
+			+ "\"timestamp\":\"Mon Jan 1 12:00:00 2023\"}}").getBytes(StandardCharsets.UTF_8);
+	// and a /configurations/<setting> one
+	private final static byte[] CONFIGURATION = "{\"EM_USOC\":\"20\"}".getBytes(StandardCharsets.UTF_8);
+	private final static JsonReaderFactory READER_FACTORY = Json.createReaderFactory(null);
+
+	@Benchmark
+	public int latestDataJsonObject() {
+		try (JsonReader reader = READER_FACTORY.createReader(new ByteArrayInputStream(LATEST_DATA))) {
+			return reader.readObject().getInt(CHARGE_LEVEL);
+		}
+	}
+
+	@Benchmark
+	public int latestDataExtractor() {
+		return SonnenJsonExtractor.extractInt(LATEST_DATA, CHARGE_LEVEL);
+	}
+
+	@Benchmark
+	public String configurationJsonObjectToString() {
+		try (JsonReader reader = READER_FACTORY.createReader(new ByteArrayInputStream(CONFIGURATION))) {
+			String setting = reader.readObject().get(SETTING_NAME).toString();
+			if (setting.startsWith(STRING_QUOTE)) {
+				setting = setting.substring(STRING_QUOTE.length());
+			}
+			if (setting.endsWith(STRING_QUOTE)) {
+				setting = setting.substring(0, setting.length() - STRING_QUOTE.length());
+			}
+			return setting;
+		}
+	}
+
+	@Benchmark
+	public String configurationJsonObjectReplaceAll() {
+		try (JsonReader reader = READER_FACTORY.createReader(new ByteArrayInputStream(CONFIGURATION))) {
+			return reader.readObject().get(SETTING_NAME).toString().replaceAll(STRING_QUOTE, "");
+		}
+	}
+
+	@Benchmark
+	public String configurationExtractor() {
+		return SonnenJsonExtractor.extractText(CONFIGURATION, SETTING_NAME);
+	}
+}
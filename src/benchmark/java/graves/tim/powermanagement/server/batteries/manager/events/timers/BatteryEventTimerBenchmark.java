@@ -0,0 +1,86 @@
+package graves.tim.powermanagement.server.batteries.manager.events.timers;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the timing wheel with the ScheduledThreadPoolExecutor based timer
+ * when scheduling an event and then cancelling it, which is what happens when
+ * an event is deleted or re-scheduled. The timer is pre-loaded with some
+ * pending tasks spread over the next day so the executors queue has something
+ * to sift through. Nothing ever becomes due during a run, so this is just the
+ * cost of the schedule and cancel.
+ *
+ * Each iteration is a fixed batch of schedule and cancels against a new timer.
+ * The executor keeps cancelled tasks in it's queue until their time would have
+ * come, so with a time based run it's queue grows by millions of entries and
+ * the run ends up measuring the garbage collector (and then runs out of heap).
+ * The queue still grows within a batch, that's part of what's being compared,
+ * have a look at the pending tasks printed at the end of each iteration
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 20, batchSize = BatteryEventTimerBenchmark.BATCH_SIZE)
+@Measurement(iterations = 20, batchSize = BatteryEventTimerBenchmark.BATCH_SIZE)
+@Fork(1)
+public class BatteryEventTimerBenchmark {
+	public final static int BATCH_SIZE = 100000;
+	public final static long TICK_MILLIS = 10;
+	@Param({ "EXECUTOR", "TIMING_WHEEL" })
+	private BatteryEventTimerType timerType;
+	@Param({ "0", "10000" })
+	private int pendingTasks;
+	private BatteryEventTimer timer;
+	private Random random;
+
+	@Setup(Level.Iteration)
+	public void setup() {
+		switch (timerType) {
+		case EXECUTOR:
+			timer = new ExecutorBatteryEventTimer();
+			break;
+		case TIMING_WHEEL:
+		default:
+			timer = new HierarchicalTimingWheel(TICK_MILLIS);
+			break;
+		}
+		random = new Random(42);
+		for (int i = 0; i < pendingTasks; i++) {
+			timer.schedule(() -> {
+			}, randomDelaySeconds(), TimeUnit.SECONDS);
+		}
+	}
+
+	@TearDown(Level.Iteration)
+	public void tearDown() {
+		System.out.println(timerType + " has " + timer.getPendingTasks() + " pending tasks at the end of the iteration");
+		timer.shutdown();
+	}
+
+	// somewhere between a minute and a day out, well past the end of the run
+	private long randomDelaySeconds() {
+		return 60 + random.nextInt(24 * 60 * 60);
+	}
+
+	@Benchmark
+	public boolean scheduleAndCancel() {
+		ScheduledEventHandle handle = timer.schedule(() -> {
+		}, randomDelaySeconds(), TimeUnit.SECONDS);
+		return handle.cancel(false);
+	}
+}
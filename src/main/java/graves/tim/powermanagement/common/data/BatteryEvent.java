@@ -12,7 +12,7 @@ import lombok.experimental.SuperBuilder;
 @Data
 @NoArgsConstructor
 @SuperBuilder
-@EqualsAndHashCode(of = "eventId", callSuper = true)
+@EqualsAndHashCode(of = "eventId", callSuper = true, doNotUseGetters = true)
 @ToString(callSuper = true)
 public class BatteryEvent extends EventDataItems implements Comparable<BatteryEvent> {
 	@Builder.Default
@@ -0,0 +1,19 @@
+package graves.tim.powermanagement.common.data;
+
+/**
+ * Where a battery is in it's startup, the server starts before the batteries
+ * have been contacted so a battery is INITIALISING until it's first responded
+ * (READY) or failed to respond (UNREACHABLE, it will be tried again)
+ */
+public enum BatteryState {
+	INITIALISING, READY, UNREACHABLE;
+
+	public static BatteryState getByName(String batteryStateName) {
+		for (BatteryState batteryState : BatteryState.values()) {
+			if (batteryState.name().equalsIgnoreCase(batteryStateName)) {
+				return batteryState;
+			}
+		}
+		return null;
+	}
+}
@@ -4,22 +4,67 @@ import java.time.Instant;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.concurrent.atomic.AtomicReference;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
 import lombok.experimental.SuperBuilder;
 
+/**
+ * A typed value, on the wire this is just the type and the value as a string.
+ * The first time the value is asked for as it's actual type the decoded
+ * version is kept so it doesn't need to be parsed again, the items built by the
+ * as... methods start out with the decoded value.
+ *
+ * The decoded versions of the booleans and the integers from
+ * SHARED_INTEGER_MINIMUM to SHARED_INTEGER_MAXIMUM (so all the percentages)
+ * are shared between items, the items themselves are not.
+ */
 @Data
 @SuperBuilder
 @NoArgsConstructor
 public class DataItem {
 	@JsonIgnore
 	public final static DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ISO_DATE_TIME;
+	public final static int SHARED_INTEGER_MINIMUM = 0;
+	public final static int SHARED_INTEGER_MAXIMUM = 100;
+	private final static Decoded SHARED_TRUE = new Decoded(String.valueOf(Boolean.TRUE), Boolean.TRUE);
+	private final static Decoded SHARED_FALSE = new Decoded(String.valueOf(Boolean.FALSE), Boolean.FALSE);
+	private final static Decoded[] SHARED_INTEGERS = new Decoded[SHARED_INTEGER_MAXIMUM - SHARED_INTEGER_MINIMUM
+			+ 1];
+	static {
+		for (int i = SHARED_INTEGER_MINIMUM; i <= SHARED_INTEGER_MAXIMUM; i++) {
+			SHARED_INTEGERS[i - SHARED_INTEGER_MINIMUM] = new Decoded(String.valueOf(i), Integer.valueOf(i));
+		}
+	}
 
 	private DataType type;
 	private String value;
+	// the decoded version of value, this is only used if it was decoded from the
+	// current value. It's final and set up here so the builder leaves it alone
+	@JsonIgnore
+	@Getter(AccessLevel.NONE)
+	@Setter(AccessLevel.NONE)
+	@EqualsAndHashCode.Exclude
+	@ToString.Exclude
+	private final transient AtomicReference<Decoded> decoded = new AtomicReference<>();
+
+	private static DataItem decodedItem(DataType type, Decoded decodedValue) {
+		DataItem dataItem = DataItem.builder().type(type).value(decodedValue.getSource()).build();
+		dataItem.decoded.set(decodedValue);
+		return dataItem;
+	}
+
+	private static DataItem decodedItem(DataType type, String text, Object decodedValue) {
+		return decodedItem(type, new Decoded(text, decodedValue));
+	}
 
 	public static DataItem asNull() {
 		return DataItem.builder().type(DataType.NULLDATA).build();
@@ -30,25 +75,51 @@ public class DataItem {
 	}
 
 	public static DataItem asLong(Long value) {
-		return DataItem.builder().type(DataType.LONG).value("" + value).build();
+		if (value == null) {
+			return DataItem.builder().type(DataType.LONG).value("" + value).build();
+		}
+		return decodedItem(DataType.LONG, value.toString(), value);
 	}
 
 	public static DataItem asInteger(Integer value) {
-		return DataItem.builder().type(DataType.INTEGER).value("" + value).build();
+		if (value == null) {
+			return DataItem.builder().type(DataType.INTEGER).value("" + value).build();
+		}
+		if ((value >= SHARED_INTEGER_MINIMUM) && (value <= SHARED_INTEGER_MAXIMUM)) {
+			return decodedItem(DataType.INTEGER, SHARED_INTEGERS[value - SHARED_INTEGER_MINIMUM]);
+		}
+		return decodedItem(DataType.INTEGER, value.toString(), value);
 	}
 
 	public static DataItem asBoolean(Boolean value) {
-		return DataItem.builder().type(DataType.BOOLEAN).value("" + value).build();
+		if (value == null) {
+			return DataItem.builder().type(DataType.BOOLEAN).value("" + value).build();
+		}
+		return decodedItem(DataType.BOOLEAN, value ? SHARED_TRUE : SHARED_FALSE);
 	}
 
 	public static DataItem asInstant(Instant value) {
 		String DTGConverted = DATE_TIME_FORMATTER.format(value);
-		return DataItem.builder().type(DataType.INSTANT).value(DTGConverted).build();
+		return decodedItem(DataType.INSTANT, DTGConverted, value);
 	}
 
 	public static DataItem asOnderDateTime(ZonedDateTime value) {
 		String DTGConverted = value.format(DATE_TIME_FORMATTER);
-		return DataItem.builder().type(DataType.ZONED_DATE_TIME).value(DTGConverted).build();
+		return decodedItem(DataType.ZONED_DATE_TIME, DTGConverted, value);
+	}
+
+	// null if the value hasn't been decoded as the requested class yet
+	private <T> T decodedAs(Class<T> decodedClass) {
+		Decoded current = decoded.get();
+		if ((current == null) || (current.getSource() != value) || !decodedClass.isInstance(current.getValue())) {
+			return null;
+		}
+		return decodedClass.cast(current.getValue());
+	}
+
+	private <T> T remember(T decodedValue) {
+		decoded.set(new Decoded(value, decodedValue));
+		return decodedValue;
 	}
 
 	public Boolean nullData() {
@@ -66,8 +137,12 @@ public class DataItem {
 		if (type != DataType.INTEGER) {
 			throw new DataItemIncorrectTypeException("Asked for Integer, but the data type contains " + type);
 		}
+		Integer decodedValue = decodedAs(Integer.class);
+		if (decodedValue != null) {
+			return decodedValue;
+		}
 		try {
-			return Integer.valueOf(value);
+			return remember(Integer.valueOf(value));
 		} catch (NumberFormatException e) {
 			throw new DataItemIncorrectIntegerFormatException(
 					"Asked for Integer, but the data type value does not parse as an integer " + value);
@@ -78,8 +153,16 @@ public class DataItem {
 		if (type != DataType.INTEGER) {
 			throw new DataItemIncorrectTypeException("Asked for Long, but the data type contains " + type);
 		}
+		Integer decodedInteger = decodedAs(Integer.class);
+		if (decodedInteger != null) {
+			return decodedInteger.longValue();
+		}
+		Long decodedValue = decodedAs(Long.class);
+		if (decodedValue != null) {
+			return decodedValue;
+		}
 		try {
-			return Long.valueOf(value);
+			return remember(Long.valueOf(value));
 		} catch (NumberFormatException e) {
 			throw new DataItemIncorrectLongFormatException(
 					"Asked for Long, but the data type value does not parse as a long " + value);
@@ -90,8 +173,12 @@ public class DataItem {
 		if (type != DataType.BOOLEAN) {
 			throw new DataItemIncorrectTypeException("Asked for Boolean, but the data type contains " + type);
 		}
+		Boolean decodedValue = decodedAs(Boolean.class);
+		if (decodedValue != null) {
+			return decodedValue;
+		}
 		try {
-			return Boolean.valueOf(value);
+			return remember(Boolean.valueOf(value));
 		} catch (NumberFormatException e) {
 			throw new DataItemIncorrectBooleanFormatException(
 					"Asked for Boolean, but the data type value does not parse as a boolean " + value);
@@ -102,8 +189,12 @@ public class DataItem {
 		if (type != DataType.INSTANT) {
 			throw new DataItemIncorrectTypeException("Asked for Instant, but the data type contains " + type);
 		}
+		Instant decodedValue = decodedAs(Instant.class);
+		if (decodedValue != null) {
+			return decodedValue;
+		}
 		try {
-			return Instant.parse(value);
+			return remember(Instant.parse(value));
 		} catch (DateTimeParseException e) {
 			throw new DataItemIncorrectTimeFormatException(
 					"Can't parse " + value + " because " + e.getLocalizedMessage());
@@ -115,11 +206,28 @@ public class DataItem {
 		if (type != DataType.ZONED_DATE_TIME) {
 			throw new DataItemIncorrectTypeException("Asked for ZonedDateTime, but the data type contains " + type);
 		}
+		ZonedDateTime decodedValue = decodedAs(ZonedDateTime.class);
+		if (decodedValue != null) {
+			return decodedValue;
+		}
 		try {
-			return ZonedDateTime.parse(value, DATE_TIME_FORMATTER);
+			return remember(ZonedDateTime.parse(value, DATE_TIME_FORMATTER));
 		} catch (DateTimeParseException e) {
 			throw new DataItemIncorrectTimeFormatException(
 					"Can't parse " + value + " because " + e.getLocalizedMessage());
 		}
 	}
+
+	// the value is kept with what it was decoded from, so if the value changes the
+	// decoded version is ignored
+	@Getter
+	private static class Decoded {
+		private final String source;
+		private final Object value;
+
+		private Decoded(String source, Object value) {
+			this.source = source;
+			this.value = value;
+		}
+	}
 }
@@ -3,29 +3,45 @@ package graves.tim.powermanagement.common.data;
 import java.time.Instant;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 import lombok.experimental.SuperBuilder;
 
 // we need the getters, setters and the like
+// the items are read by the REST api while the scheduler is updating them, so
+// they are held in a concurrent map, reads don't lock and iterating over the
+// names sees the map as it is at the time (it won't fail if it's changed).
+// The map is kept sorted by name so finding the names with a prefix (e.g. the
+// saved configurations) only looks at the names with that prefix, not
+// everything the battery holds.
+// The data is serialized through a read only view of the map, anything that
+// wants to hold on to the items as they are now should take a snapshot.
+// equals, hashCode and toString use the map directly rather than going through
+// getData
 @Data
 @SuperBuilder
 @NoArgsConstructor
+@EqualsAndHashCode(doNotUseGetters = true)
+@ToString(doNotUseGetters = true)
 public class EventDataItems {
 	@Builder.Default
-	private Map<String, DataItem> data = new HashMap<>();
+	private ConcurrentNavigableMap<String, DataItem> data = new ConcurrentSkipListMap<>();
 
+	// the concurrent map can't hold nulls, adding a null item removes the item
+	// instead, as far as dataItem is concerned there's no difference
 	public DataItem addDataItem(String itemName, DataItem item) {
-		if (data == null) {
-			data = new HashMap<>();
-		}
-		synchronized (data) {
-			return data.put(itemName, item);
+		if (item == null) {
+			return data.remove(itemName);
 		}
+		return data.put(itemName, item);
 	}
 
 	public DataItem addDataItem(String itemName, String item) {
@@ -49,38 +65,53 @@ public class EventDataItems {
 	}
 
 	public DataItem removeDataItem(String itemName) {
-		synchronized (data) {
-			return data.remove(itemName);
-		}
+		return data.remove(itemName);
 	}
 
 	public boolean hasDataItem(String name) {
-		synchronized (data) {
-			return data.containsKey(name);
-		}
+		return data.containsKey(name);
 	}
 
 	public DataItem dataItem(String name) throws DataItemNotFoundException {
-		synchronized (data) {
-			DataItem item = data.get(name);
-			if (item == null) {
-				throw new DataItemNotFoundException("Cannot locate data item " + name);
-			}
-			return item;
+		DataItem item = data.get(name);
+		if (item == null) {
+			throw new DataItemNotFoundException("Cannot locate data item " + name);
 		}
+		return item;
 	}
 
+	// the names with the prefix are all together from the prefix onwards, so stop
+	// at the first one without it
 	public Collection<String> dataItemNamesStartingWith(String prefix) {
-		synchronized (data) {
-			return data.entrySet().stream().map(entry -> entry.getKey()).filter(name -> name.startsWith(prefix))
-					.toList();
-		}
+		return data.tailMap(prefix, true).keySet().stream().takeWhile(name -> name.startsWith(prefix)).toList();
 	}
 
+	// a read only view of the items, this changes as the items change
 	public Map<String, DataItem> allDataItems() {
-		synchronized (data) {
-			return Collections.unmodifiableMap(data);
+		return Collections.unmodifiableMap(data);
+	}
+
+	// an immutable copy of the items as they are now, later changes don't affect
+	// it
+	public Map<String, DataItem> snapshot() {
+		return Collections.unmodifiableSortedMap(new TreeMap<>(data));
+	}
+
+	public Map<String, DataItem> getData() {
+		return allDataItems();
+	}
+
+	// whatever the deserializer gives us is copied into a concurrent map
+	public void setData(Map<String, DataItem> data) {
+		ConcurrentNavigableMap<String, DataItem> items = new ConcurrentSkipListMap<>();
+		if (data != null) {
+			data.forEach((itemName, item) -> {
+				if (item != null) {
+					items.put(itemName, item);
+				}
+			});
 		}
+		this.data = items;
 	}
 
 	public String stringValue(String name) throws DataItemIncorrectTypeException, DataItemNotFoundException {
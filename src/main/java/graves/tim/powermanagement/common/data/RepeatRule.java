@@ -1,7 +1,10 @@
 package graves.tim.powermanagement.common.data;
 
+import java.time.Duration;
+import java.time.YearMonth;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
 
 import lombok.Builder;
 import lombok.Data;
@@ -32,6 +35,38 @@ public class RepeatRule {
 	@Builder.Default
 	private RepeatDays repeatDays = RepeatDays.EVERYDAY;
 
+	// roughly how many times a minute this will run once it's going, used to stop
+	// something flooding the scheduler
+	public double projectedExecutionsPerMinute() {
+		if ((repeatsRemaining == 0) || (repeatInterval <= 0)) {
+			return 0;
+		}
+		double minutesPerRepeat;
+		switch (repeatType) {
+		case SECOND:
+			minutesPerRepeat = repeatInterval / 60.0;
+			break;
+		case MINUTE:
+			minutesPerRepeat = repeatInterval;
+			break;
+		case HOUR:
+			minutesPerRepeat = repeatInterval * 60.0;
+			break;
+		case DAY:
+			minutesPerRepeat = repeatInterval * 60.0 * 24;
+			break;
+		case WEEK:
+			minutesPerRepeat = repeatInterval * 60.0 * 24 * 7;
+			break;
+		case MONTH:
+			minutesPerRepeat = repeatInterval * 60.0 * 24 * 30;
+			break;
+		default:
+			return 0;
+		}
+		return 1 / minutesPerRepeat;
+	}
+
 	public ZonedDateTime calculateNextRepeat(ZonedDateTime previousScheduledRunTime) {
 		return calculateNextRepeat(previousScheduledRunTime, true);
 	}
@@ -43,21 +78,118 @@ public class RepeatRule {
 		// OR
 		// it may just have been set in the past
 		if (rollForward) {
-			while (nextRunTime.isBefore(now)) {
-				log.finer("Rolling forward as next runtime " + nextRunTime.format(DateTimeFormatter.ISO_DATE_TIME)
-						+ " is before the current time of " + now.format(DateTimeFormatter.ISO_DATE_TIME));
-				nextRunTime = determineNextRepeat(nextRunTime);
-				if (nextRunTime == null) {
-					return null;
+			if (!nextRunTime.isBefore(now)) {
+				return nextRunTime;
+			}
+			log.finer("Rolling forward as next runtime " + nextRunTime.format(DateTimeFormatter.ISO_DATE_TIME)
+					+ " is before the current time of " + now.format(DateTimeFormatter.ISO_DATE_TIME));
+			if (repeatInterval <= 0) {
+				// we'd never actually get past now, but that's how it's always behaved so
+				// leave it to the step by step approach
+				while (nextRunTime.isBefore(now)) {
+					nextRunTime = determineNextRepeat(nextRunTime);
+					if (nextRunTime == null) {
+						return null;
+					}
 				}
+				return nextRunTime;
 			}
-			return nextRunTime;
+			return catchUp(nextRunTime, now);
 		} else {
 			log.finer("Just calculating using next runtime " + nextRunTime.format(DateTimeFormatter.ISO_DATE_TIME));
 			return determineNextRepeat(nextRunTime);
 		}
 	}
 
+	// jump straight to the first repeat which is not before now rather than
+	// stepping through every missed repeat (a SECOND repeat that was down for a
+	// day would otherwise take 86,400 steps). The repeats remaining are reduced by
+	// the number of repeats skipped, just as they would be when stepping
+	private ZonedDateTime catchUp(ZonedDateTime previousScheduledRunTime, ZonedDateTime now) {
+		long steps = stepsToReach(previousScheduledRunTime, now);
+		if (steps < 0) {
+			log.severe("Unknown repeat type " + repeatType + ", will ignore this repeat reaquest");
+			return null;
+		}
+		// a negative repeats remaining means forever
+		if (repeatsRemaining >= 0) {
+			if (steps >= repeatsRemaining) {
+				repeatsRemaining = 0;
+				return null;
+			}
+			repeatsRemaining -= steps;
+		}
+		ZonedDateTime calculatedStep = stepForward(previousScheduledRunTime, steps);
+		log.finest(() -> "Caught up " + steps + " repeats to "
+				+ calculatedStep.format(DateTimeFormatter.ISO_DATE_TIME));
+		return calculatedStep;
+	}
+
+	// how many repeats after previousScheduledRunTime is the first one that's not
+	// before now. The estimate is exact for the fixed length repeat types, for days,
+	// weeks and months the length of a step depends on DST changes and the length
+	// of the month so the estimate can be out by one either way and is adjusted.
+	// The steps are all taken from previousScheduledRunTime so the wall clock time
+	// and day of month don't pick up a DST gap or month end adjustment from one of
+	// the skipped repeats
+	private long stepsToReach(ZonedDateTime previousScheduledRunTime, ZonedDateTime now) {
+		long estimate;
+		switch (repeatType) {
+		case SECOND:
+			estimate = Duration.between(previousScheduledRunTime, now).dividedBy(Duration.ofSeconds(repeatInterval));
+			break;
+		case MINUTE:
+			estimate = Duration.between(previousScheduledRunTime, now).dividedBy(Duration.ofMinutes(repeatInterval));
+			break;
+		case HOUR:
+			estimate = Duration.between(previousScheduledRunTime, now).dividedBy(Duration.ofHours(repeatInterval));
+			break;
+		case DAY:
+			estimate = ChronoUnit.DAYS.between(previousScheduledRunTime.toLocalDate(), now.toLocalDate())
+					/ repeatInterval;
+			break;
+		case WEEK:
+			estimate = ChronoUnit.WEEKS.between(previousScheduledRunTime.toLocalDate(), now.toLocalDate())
+					/ repeatInterval;
+			break;
+		case MONTH:
+			estimate = ChronoUnit.MONTHS.between(YearMonth.from(previousScheduledRunTime), YearMonth.from(now))
+					/ repeatInterval;
+			break;
+		default:
+			return -1;
+		}
+		long steps = estimate;
+		while ((steps > 0) && !stepForward(previousScheduledRunTime, steps - 1).isBefore(now)) {
+			steps--;
+		}
+		while (stepForward(previousScheduledRunTime, steps).isBefore(now)) {
+			steps++;
+		}
+		return steps;
+	}
+
+	// move forward the specified number of repeats in one go
+	private ZonedDateTime stepForward(ZonedDateTime previousScheduledRunTime, long steps) {
+		long amount = Math.multiplyExact(steps, (long) repeatInterval);
+		switch (repeatType) {
+		case SECOND:
+			return previousScheduledRunTime.plusSeconds(amount);
+		case MINUTE:
+			return previousScheduledRunTime.plusMinutes(amount);
+		case HOUR:
+			return previousScheduledRunTime.plusHours(amount);
+		case DAY:
+			return previousScheduledRunTime.plusDays(amount);
+		case WEEK:
+			return previousScheduledRunTime.plusWeeks(amount);
+		case MONTH:
+			return previousScheduledRunTime.plusMonths(amount);
+		default:
+			return null;
+		}
+	}
+
 	private ZonedDateTime determineNextRepeat(ZonedDateTime previousScheduledRunTime) {
 		if (repeatsRemaining > 0) {
 			repeatsRemaining--;
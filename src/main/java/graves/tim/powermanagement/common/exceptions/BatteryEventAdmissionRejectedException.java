@@ -0,0 +1,30 @@
+package graves.tim.powermanagement.common.exceptions;
+
+public class BatteryEventAdmissionRejectedException extends BatteryException {
+
+	public BatteryEventAdmissionRejectedException() {
+		// TODO Auto-generated constructor stub
+	}
+
+	public BatteryEventAdmissionRejectedException(String message) {
+		super(message);
+		// TODO Auto-generated constructor stub
+	}
+
+	public BatteryEventAdmissionRejectedException(Throwable cause) {
+		super(cause);
+		// TODO Auto-generated constructor stub
+	}
+
+	public BatteryEventAdmissionRejectedException(String message, Throwable cause) {
+		super(message, cause);
+		// TODO Auto-generated constructor stub
+	}
+
+	public BatteryEventAdmissionRejectedException(String message, Throwable cause, boolean enableSuppression,
+			boolean writableStackTrace) {
+		super(message, cause, enableSuppression, writableStackTrace);
+		// TODO Auto-generated constructor stub
+	}
+
+}
@@ -6,6 +6,7 @@ import org.eclipse.microprofile.rest.client.inject.RegisterRestClient;
 
 import graves.tim.powermanagement.common.data.BatteryConfigurationSetting;
 import graves.tim.powermanagement.common.data.BatteryEvent;
+import graves.tim.powermanagement.common.data.BatteryState;
 import graves.tim.powermanagement.common.data.DataItem;
 import graves.tim.powermanagement.common.data.DataItemIncorrectBooleanFormatException;
 import graves.tim.powermanagement.common.data.DataItemIncorrectIntegerFormatException;
@@ -13,6 +14,7 @@ import graves.tim.powermanagement.common.data.DataItemIncorrectTypeException;
 import graves.tim.powermanagement.common.data.DataItemNotFoundException;
 import graves.tim.powermanagement.common.data.EventDataItems;
 import graves.tim.powermanagement.common.exceptions.BatteryEventActiveChildTasksException;
+import graves.tim.powermanagement.common.exceptions.BatteryEventAdmissionRejectedException;
 import graves.tim.powermanagement.common.exceptions.BatteryEventEventInProgressException;
 import graves.tim.powermanagement.common.exceptions.BatteryEventEventTypeRequiresSystemBattery;
 import graves.tim.powermanagement.common.exceptions.BatteryEventEventTypeUnsupportedOnSystemBatteryException;
@@ -57,7 +59,7 @@ public interface BatteryController {
 			throws BatteryNotFoundException, BatteryEventUnknownEventTypeException,
 			BatteryEventUnimplementedEventTypeException, BatteryEventEventTypeRequiresSystemBattery,
 			BatteryEventEventTypeUnsupportedOnSystemBatteryException, BatteryEventNotYetSupportedEventTypeException,
-			BatteryEventInPastException;
+			BatteryEventInPastException, BatteryEventAdmissionRejectedException;
 
 	@GET
 	@Path("/events/{batteryname}")
@@ -89,6 +91,12 @@ public interface BatteryController {
 			throws BatteryNotFoundException, BatteryUnauthorisedAccessException, BatteryUnknownSettingException,
 			BatteryInvalidParameterException, BatteryUnsupportedOperationException;
 
+	@GET
+	@Path("/info/batteryState/{batteryname}")
+	@Produces(MediaType.APPLICATION_JSON)
+	public BatteryState getBatteryState(@PathParam(value = "batteryname") String batteryName)
+			throws BatteryNotFoundException;
+
 	@GET
 	@Path("/info/batteryReserveChargeLevel/{batteryname}")
 	@Produces(MediaType.APPLICATION_JSON)
@@ -0,0 +1,45 @@
+package graves.tim.powermanagement.server.batteries;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Helpers for the async versions of the battery calls. Batteries which don't do
+ * any I/O (or which just can't do it asynchronously) run the synchronous
+ * version and return it's result or exception as an already completed stage.
+ * Any checked exceptions thrown in a stage turn up wrapped in a
+ * CompletionException, use unwrap to get back to the original exception.
+ */
+public class BatteryCompletionStages {
+	@FunctionalInterface
+	public interface BatteryCall<T> {
+		public T call() throws Exception;
+	}
+
+	public static <T> CompletionStage<T> completed(BatteryCall<T> batteryCall) {
+		try {
+			return CompletableFuture.completedFuture(batteryCall.call());
+		} catch (Exception e) {
+			return CompletableFuture.failedFuture(e);
+		}
+	}
+
+	// for use inside a stage where only unchecked exceptions can be thrown
+	public static <T> T callInStage(BatteryCall<T> batteryCall) {
+		try {
+			return batteryCall.call();
+		} catch (CompletionException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new CompletionException(e);
+		}
+	}
+
+	public static Throwable unwrap(Throwable throwable) {
+		while ((throwable instanceof CompletionException) && (throwable.getCause() != null)) {
+			throwable = throwable.getCause();
+		}
+		return throwable;
+	}
+}
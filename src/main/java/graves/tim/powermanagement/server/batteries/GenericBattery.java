@@ -1,10 +1,10 @@
 package graves.tim.powermanagement.server.batteries;
 
 import java.util.Collection;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
@@ -22,8 +22,12 @@ import graves.tim.powermanagement.common.exceptions.BatteryUnauthorisedAccessExc
 import graves.tim.powermanagement.common.exceptions.BatteryUnexpectedResponseException;
 import graves.tim.powermanagement.common.exceptions.BatteryUnknownSettingException;
 import graves.tim.powermanagement.common.exceptions.BatteryUnsupportedOperationException;
+import graves.tim.powermanagement.server.batteries.batteryimplementations.BatteryConfigurationSettings;
+import graves.tim.powermanagement.server.batteries.batteryimplementations.BatteryTelemetryCache;
 import graves.tim.powermanagement.server.batteries.batteryimplementations.ConfigurationSettingEntry;
 import graves.tim.powermanagement.server.batteries.manager.BatteryData;
+import graves.tim.powermanagement.server.connectionsupport.BatteryConnectionPool;
+import graves.tim.powermanagement.server.connectionsupport.BatteryFaultTolerance;
 import jakarta.json.JsonArray;
 import jakarta.json.JsonObject;
 
@@ -32,7 +36,6 @@ public interface GenericBattery {
 	public static final String CONFIG_PREFIX_DELIM = "/";
 	public static final String PREVIOUS_CONFIG_PREFIX = CONFIG_PREFIX_DELIM + "previous" + CONFIG_PREFIX_DELIM;
 	public static final String SAVED_CONFIG_PREFIX = CONFIG_PREFIX_DELIM + "saved" + CONFIG_PREFIX_DELIM;
-	public Map<BatteryConfigurationSetting, ConfigurationSettingEntry> configurationSettings = new HashMap<>();
 
 	@JsonIgnore
 	public void setBatteryData(BatteryData batteryData);
@@ -69,38 +72,132 @@ public interface GenericBattery {
 	public JsonArray retrievePowerMeter() throws BatteryUnauthorisedAccessException, BatteryInvalidParameterException,
 			BatteryUnknownSettingException, BatteryUnsupportedOperationException;
 
+	/**
+	 * Batteries that cache their telemetry may return something they retrieved a
+	 * little while ago from the plain retrieve methods, these versions let the
+	 * caller insist on going to the battery. Batteries that don't cache always
+	 * return fresh data anyway.
+	 */
+	public default int retrieveCurrentChargeLevel(boolean fresh)
+			throws BatteryUnauthorisedAccessException, BatteryInvalidParameterException,
+			BatteryUnknownSettingException, BatteryUnsupportedOperationException {
+		return retrieveCurrentChargeLevel();
+	}
+
+	public default JsonObject retrieveStatus(boolean fresh) throws BatteryUnauthorisedAccessException,
+			BatteryInvalidParameterException, BatteryUnknownSettingException, BatteryUnsupportedOperationException {
+		return retrieveStatus();
+	}
+
+	public default JsonObject retrieveLatestData(boolean fresh) throws BatteryUnauthorisedAccessException,
+			BatteryInvalidParameterException, BatteryUnknownSettingException, BatteryUnsupportedOperationException {
+		return retrieveLatestData();
+	}
+
+	public default JsonArray retrievePowerMeter(boolean fresh) throws BatteryUnauthorisedAccessException,
+			BatteryInvalidParameterException, BatteryUnknownSettingException, BatteryUnsupportedOperationException {
+		return retrievePowerMeter();
+	}
+
+	/**
+	 * Async versions of the calls the scheduler and anything polling the batteries
+	 * are likely to use, these let the I/O to different batteries overlap without
+	 * needing a thread per call. Failures complete the stage exceptionally, see
+	 * BatteryCompletionStages
+	 */
+	public CompletionStage<JsonObject> retrieveStatusAsync(boolean fresh);
+
+	public CompletionStage<JsonObject> retrieveLatestDataAsync(boolean fresh);
+
+	public CompletionStage<JsonArray> retrievePowerMeterAsync(boolean fresh);
+
+	public CompletionStage<Integer> retrieveCurrentChargeLevelAsync(boolean fresh);
+
+	public CompletionStage<Integer> retrieveBatteryReserveLevelAsync();
+
+	public CompletionStage<Integer> applyBatteryReserveLevelAsync(int reserveLevel);
+
+	public default CompletionStage<JsonObject> retrieveStatusAsync() {
+		return retrieveStatusAsync(false);
+	}
+
+	public default CompletionStage<JsonObject> retrieveLatestDataAsync() {
+		return retrieveLatestDataAsync(false);
+	}
+
+	public default CompletionStage<JsonArray> retrievePowerMeterAsync() {
+		return retrievePowerMeterAsync(false);
+	}
+
+	public default CompletionStage<Integer> retrieveCurrentChargeLevelAsync() {
+		return retrieveCurrentChargeLevelAsync(false);
+	}
+
+	// re-reads any configuration settings we are remembering which are getting
+	// near the end of their TTL, so they are still trusted when an event next
+	// needs them. Batteries that don't remember their settings have nothing to do
+	public default CompletionStage<Void> refreshConfigurationStateAsync() {
+		return CompletableFuture.completedFuture(null);
+	}
+
+	// null if the battery doesn't cache it's telemetry
+	@JsonIgnore
+	public default BatteryTelemetryCache getTelemetryCache() {
+		return null;
+	}
+
+	// null if the battery doesn't talk to anything over the network
+	@JsonIgnore
+	public default BatteryConnectionPool getConnectionPool() {
+		return null;
+	}
+
+	@JsonIgnore
+	public default BatteryFaultTolerance getFaultTolerance() {
+		return null;
+	}
+
+	// the settings this type of battery supports, batteries with configuration
+	// settings override this, there is one set of settings per battery class
+	@JsonIgnore
+	public default BatteryConfigurationSettings getConfigurationSettings() {
+		return BatteryConfigurationSettings.NONE;
+	}
+
 	@JsonIgnore
 	public default Map<String, DataType> getBatteryConfigurationSettings() {
-		return configurationSettings.entrySet().stream().collect(
-				Collectors.toMap(entry -> entry.getKey().getPublicName(), entry -> entry.getValue().getDataType()));
+		return getConfigurationSettings().getDataTypesByPublicName();
 	}
 
 	@JsonIgnore
 	public default String getPrivateConfigurationName(BatteryConfigurationSetting setting)
 			throws BatteryUnknownSettingException {
-		if (configurationSettings.containsKey(setting)) {
-			return configurationSettings.get(setting).getPrivateName();
+		ConfigurationSettingEntry entry = getConfigurationSettings().get(setting);
+		if (entry == null) {
+			throw new BatteryUnknownSettingException("This battery does not support the setting " + setting
+					+ " supported settings are " + getConfigurationSettings());
 		}
-		throw new BatteryUnknownSettingException("This battery does not support the setting " + setting
-				+ " supported settings are " + configurationSettings.keySet());
+		return entry.getPrivateName();
 	}
 
 	@JsonIgnore
 	public default DataType getPrivateConfigurationDataType(BatteryConfigurationSetting setting)
 			throws BatteryUnknownSettingException {
-		if (configurationSettings.containsKey(setting)) {
-			return configurationSettings.get(setting).getDataType();
+		ConfigurationSettingEntry entry = getConfigurationSettings().get(setting);
+		if (entry == null) {
+			throw new BatteryUnknownSettingException("This battery does not support the setting " + setting);
 		}
-		throw new BatteryUnknownSettingException("This battery does not support the setting " + setting);
+		return entry.getDataType();
 	}
 
 	@JsonIgnore
 	public default boolean isPrivateConfigurationReadOnly(BatteryConfigurationSetting setting)
 			throws BatteryUnknownSettingException {
-		if (configurationSettings.containsKey(setting)) {
-			return configurationSettings.get(setting).isReadOnly();
+		ConfigurationSettingEntry entry = getConfigurationSettings().get(setting);
+		if (entry == null) {
+			throw new BatteryUnknownSettingException("This battery does not support the setting " + setting);
 		}
-		throw new BatteryUnknownSettingException("This battery does not support the setting " + setting);
+		return entry.isReadOnly();
 	}
 
 	public String setConfiguration(String settingName, String settingValue) throws BatteryUnauthorisedAccessException,
@@ -117,27 +214,71 @@ public interface GenericBattery {
 			BatteryUnsupportedOperationException, DataItemIncorrectBooleanFormatException,
 			DataItemIncorrectTypeException, DataItemNotFoundException, DataItemIncorrectIntegerFormatException,
 			BatteryReadOnlySettingException {
+		checkConfigurationUpdate(setting, dataItem);
+		DataItem oldValue = writeConfiguration(setting, dataItem);
+		getBatteryData().addDataItem(setting.getPublicName(), oldValue);
+		return oldValue;
+	}
+
+	/**
+	 * Updates several settings together, all of the settings are checked before
+	 * any are changed. The previous values are recorded for each setting just as
+	 * they are by updateConfiguration and are returned in the same order as the
+	 * provided settings
+	 */
+	public default Map<BatteryConfigurationSetting, DataItem> setConfigurations(
+			Map<BatteryConfigurationSetting, DataItem> settings) throws BatteryUnauthorisedAccessException,
+			BatteryInvalidParameterException, BatteryUnknownSettingException, BatteryUnsupportedOperationException,
+			DataItemIncorrectBooleanFormatException, DataItemIncorrectTypeException, DataItemNotFoundException,
+			DataItemIncorrectIntegerFormatException, BatteryReadOnlySettingException {
+		for (Map.Entry<BatteryConfigurationSetting, DataItem> setting : settings.entrySet()) {
+			checkConfigurationUpdate(setting.getKey(), setting.getValue());
+		}
+		Map<BatteryConfigurationSetting, DataItem> oldValues = writeConfigurations(settings);
+		for (Map.Entry<BatteryConfigurationSetting, DataItem> oldValue : oldValues.entrySet()) {
+			recordConfigurationUpdate(oldValue.getKey(), oldValue.getValue());
+		}
+		return oldValues;
+	}
+
+	// the same bookkeeping that setConfiguration and updateConfiguration do
+	public default void recordConfigurationUpdate(BatteryConfigurationSetting setting, DataItem oldValue) {
+		String name = setting.getPublicName();
+		getBatteryData().addDataItem(name, oldValue);
+		getBatteryData().getConfigurationHistory().recordPrevious(setting, oldValue);
+	}
+
+	public default void checkConfigurationUpdate(BatteryConfigurationSetting setting, DataItem dataItem)
+			throws BatteryUnknownSettingException, BatteryReadOnlySettingException, BatteryInvalidParameterException {
 		if (isPrivateConfigurationReadOnly(setting)) {
 			throw new BatteryReadOnlySettingException("Setting " + setting.getPublicName()
 					+ " is read only for battery " + getBatteryData().getBatteryName());
 		}
-		String privateName = getPrivateConfigurationName(setting);
 		DataType dataType = getPrivateConfigurationDataType(setting);
 		if (dataType != dataItem.getType()) {
 			throw new BatteryInvalidParameterException("Setting " + setting + " is for data type " + dataType
 					+ " but the data item you supplied is of type " + dataItem.getType());
 		}
-		DataItem oldValue;
+	}
+
+	/**
+	 * Sends the setting to the battery and returns the old value, there's no
+	 * checking or recording of the old value here, use setConfiguration or
+	 * updateConfiguration
+	 */
+	public default DataItem writeConfiguration(BatteryConfigurationSetting setting, DataItem dataItem)
+			throws BatteryUnauthorisedAccessException, BatteryInvalidParameterException, BatteryUnknownSettingException,
+			BatteryUnsupportedOperationException, DataItemIncorrectBooleanFormatException,
+			DataItemIncorrectTypeException, DataItemNotFoundException, DataItemIncorrectIntegerFormatException {
+		String privateName = getPrivateConfigurationName(setting);
+		DataType dataType = getPrivateConfigurationDataType(setting);
 		switch (dataType) {
 		case BOOLEAN:
-			oldValue = DataItem.asBoolean(setConfiguration(privateName, dataItem.booleanValue()));
-			break;
+			return DataItem.asBoolean(setConfiguration(privateName, dataItem.booleanValue()));
 		case INTEGER:
-			oldValue = DataItem.asInteger(setConfiguration(privateName, dataItem.integerValue()));
-			break;
+			return DataItem.asInteger(setConfiguration(privateName, dataItem.integerValue()));
 		case STRING:
-			oldValue = DataItem.asString(setConfiguration(privateName, dataItem.stringValue()));
-			break;
+			return DataItem.asString(setConfiguration(privateName, dataItem.stringValue()));
 		case INSTANT:
 		case LONG:
 		case NULLDATA:
@@ -146,8 +287,22 @@ public interface GenericBattery {
 			throw new BatteryInvalidParameterException("Setting " + setting + " want's to return an DataItem of type "
 					+ dataType + " but that's not a currently supported configuration setting type");
 		}
-		getBatteryData().addDataItem(setting.getPublicName(), oldValue);
-		return oldValue;
+	}
+
+	/**
+	 * Sends several settings to the battery, by default one at a time, batteries
+	 * that can take several settings in one request should override this
+	 */
+	public default Map<BatteryConfigurationSetting, DataItem> writeConfigurations(
+			Map<BatteryConfigurationSetting, DataItem> settings) throws BatteryUnauthorisedAccessException,
+			BatteryInvalidParameterException, BatteryUnknownSettingException, BatteryUnsupportedOperationException,
+			DataItemIncorrectBooleanFormatException, DataItemIncorrectTypeException, DataItemNotFoundException,
+			DataItemIncorrectIntegerFormatException {
+		Map<BatteryConfigurationSetting, DataItem> oldValues = new LinkedHashMap<>();
+		for (Map.Entry<BatteryConfigurationSetting, DataItem> setting : settings.entrySet()) {
+			oldValues.put(setting.getKey(), writeConfiguration(setting.getKey(), setting.getValue()));
+		}
+		return oldValues;
 	}
 
 	public default String setConfiguration(BatteryConfigurationSetting setting, String settingValue)
@@ -222,25 +377,19 @@ public interface GenericBattery {
 			throws BatteryUnauthorisedAccessException, BatteryInvalidParameterException, BatteryUnknownSettingException,
 			BatteryUnsupportedOperationException, DataItemIncorrectBooleanFormatException,
 			DataItemIncorrectIntegerFormatException, DataItemIncorrectTypeException, DataItemNotFoundException {
-		String name = setting.getPublicName();
-		String settingSaveName = getSavedConfigSettingName(name, saveName);
 		DataItem current = getConfiguration(setting);
-		getBatteryData().addDataItem(settingSaveName, current);
+		getBatteryData().getConfigurationHistory().save(setting, saveName, current);
 		return current;
 	}
 
 	public default Boolean savedConfigurationExists(BatteryConfigurationSetting setting, String saveName)
 			throws BatteryUnknownSettingException {
-		String name = setting.getPublicName();
-		String settingSaveName = getSavedConfigSettingName(name, saveName);
-		return getBatteryData().hasDataItem(settingSaveName);
+		return getBatteryData().getConfigurationHistory().hasSaved(setting, saveName);
 	}
 
 	public default Boolean previousConfigurationExists(BatteryConfigurationSetting setting)
 			throws BatteryUnknownSettingException {
-		String name = setting.getPublicName();
-		String previousSaveName = getPreviousConfigSettingName(name);
-		return getBatteryData().hasDataItem(previousSaveName);
+		return getBatteryData().getConfigurationHistory().hasPrevious(setting);
 	}
 
 	public default String getConfigurationItemAsString(BatteryConfigurationSetting setting)
@@ -296,7 +445,7 @@ public interface GenericBattery {
 			DataItemIncorrectTypeException, DataItemNotFoundException, BatteryReadOnlySettingException;
 
 	public default Collection<BatteryConfigurationSetting> listSupportedConfigurationSettings() {
-		return Collections.unmodifiableCollection(configurationSettings.keySet());
+		return getConfigurationSettings().getSupportedSettings();
 	}
 
 	public default DataItem updateConfiguration(BatteryConfigurationSetting setting, DataItem value)
@@ -304,10 +453,8 @@ public interface GenericBattery {
 			BatteryUnsupportedOperationException, DataItemIncorrectBooleanFormatException,
 			DataItemIncorrectIntegerFormatException, DataItemIncorrectTypeException, DataItemNotFoundException,
 			BatteryReadOnlySettingException {
-		String name = setting.getPublicName();
 		DataItem previousValue = setConfiguration(setting, value);
-		String previousDataItemName = getPreviousConfigSettingName(name);
-		getBatteryData().addDataItem(previousDataItemName, previousValue);
+		getBatteryData().getConfigurationHistory().recordPrevious(setting, previousValue);
 		return previousValue;
 	}
 
@@ -316,10 +463,7 @@ public interface GenericBattery {
 			BatteryUnsupportedOperationException, DataItemIncorrectBooleanFormatException,
 			DataItemIncorrectTypeException, DataItemNotFoundException, DataItemIncorrectIntegerFormatException,
 			BatteryReadOnlySettingException {
-		String name = setting.getPublicName();
-		String previousDataItemName = getSavedConfigSettingName(name, saveName);
-		DataItem previousSetting = getBatteryData().dataItem(previousDataItemName);
-		return updateConfiguration(setting, previousSetting);
+		return updateConfiguration(setting, getBatteryData().getConfigurationHistory().saved(setting, saveName));
 	}
 
 	public default DataItem restorePreviousConfiguration(BatteryConfigurationSetting setting)
@@ -327,19 +471,14 @@ public interface GenericBattery {
 			BatteryUnsupportedOperationException, DataItemIncorrectBooleanFormatException,
 			DataItemIncorrectTypeException, DataItemNotFoundException, DataItemIncorrectIntegerFormatException,
 			BatteryReadOnlySettingException {
-		String name = setting.getPublicName();
-		String previousDataItemName = getPreviousConfigSettingName(name);
-		DataItem previousSetting = getBatteryData().dataItem(previousDataItemName);
-		return updateConfiguration(setting, previousSetting);
+		return updateConfiguration(setting, getBatteryData().getConfigurationHistory().previous(setting));
 	}
 
 	public default DataItem removeSavedConfiguration(BatteryConfigurationSetting setting, String saveName)
 			throws BatteryUnauthorisedAccessException, BatteryInvalidParameterException, BatteryUnknownSettingException,
 			BatteryUnsupportedOperationException, DataItemIncorrectBooleanFormatException,
 			DataItemIncorrectTypeException, DataItemNotFoundException, DataItemIncorrectIntegerFormatException {
-		String name = setting.getPublicName();
-		String previousDataItemName = getSavedConfigSettingName(name, saveName);
-		return getBatteryData().removeDataItem(previousDataItemName);
+		return getBatteryData().getConfigurationHistory().removeSaved(setting, saveName);
 
 	}
 
@@ -347,9 +486,7 @@ public interface GenericBattery {
 			throws BatteryUnauthorisedAccessException, BatteryInvalidParameterException, BatteryUnknownSettingException,
 			BatteryUnsupportedOperationException, DataItemIncorrectBooleanFormatException,
 			DataItemIncorrectTypeException, DataItemNotFoundException, DataItemIncorrectIntegerFormatException {
-		String name = setting.getPublicName();
-		String previousDataItemName = getPreviousConfigSettingName(name);
-		return getBatteryData().removeDataItem(previousDataItemName);
+		return getBatteryData().getConfigurationHistory().removePrevious(setting);
 
 	}
 
@@ -357,28 +494,23 @@ public interface GenericBattery {
 			throws BatteryUnauthorisedAccessException, BatteryInvalidParameterException, BatteryUnknownSettingException,
 			BatteryUnsupportedOperationException, DataItemIncorrectBooleanFormatException,
 			DataItemIncorrectTypeException, DataItemNotFoundException, DataItemIncorrectIntegerFormatException {
-		String name = setting.getPublicName();
-		String previousDataItemName = getSavedConfigSettingName(name, saveName);
-		return getBatteryData().dataItem(previousDataItemName);
+		return getBatteryData().getConfigurationHistory().saved(setting, saveName);
 	}
 
 	public default DataItem getPreviousConfiguration(BatteryConfigurationSetting setting)
 			throws BatteryUnauthorisedAccessException, BatteryInvalidParameterException, BatteryUnknownSettingException,
 			BatteryUnsupportedOperationException, DataItemIncorrectBooleanFormatException,
 			DataItemIncorrectTypeException, DataItemNotFoundException, DataItemIncorrectIntegerFormatException {
-		String name = setting.getPublicName();
-		String previousDataItemName = getPreviousConfigSettingName(name);
-		return getBatteryData().dataItem(previousDataItemName);
+		return getBatteryData().getConfigurationHistory().previous(setting);
 	}
 
 	public default Collection<String> listSavedConfigSettingNames() {
-		return getBatteryData().dataItemNamesStartingWith(SAVED_CONFIG_PREFIX);
+		return getBatteryData().getConfigurationHistory().listSavedNames();
 	}
 
 	public default Collection<String> listSavedConfigSettingNames(BatteryConfigurationSetting setting)
 			throws BatteryUnknownSettingException {
-		String name = setting.getPublicName();
-		return getBatteryData().dataItemNamesStartingWith(getSavedConfigSettingPrefix(name));
+		return getBatteryData().getConfigurationHistory().listSavedNames(setting);
 	}
 
 	public static String getSavedConfigSettingName(String settingName, String saveName) {
@@ -390,7 +522,7 @@ public interface GenericBattery {
 	}
 
 	public default Collection<String> listPreviousConfigSettingNames() {
-		return getBatteryData().dataItemNamesStartingWith(getPreviousConfigSettingPrefix());
+		return getBatteryData().getConfigurationHistory().listPreviousNames();
 	}
 
 	public static String getPreviousConfigSettingName(String settingName) {
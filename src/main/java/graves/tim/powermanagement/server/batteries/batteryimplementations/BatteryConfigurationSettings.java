@@ -0,0 +1,73 @@
+package graves.tim.powermanagement.server.batteries.batteryimplementations;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import graves.tim.powermanagement.common.data.BatteryConfigurationSetting;
+import graves.tim.powermanagement.common.data.DataType;
+
+/**
+ * The configuration settings a type of battery supports and what they are
+ * called on the battery. Each battery class builds one of these once (usually
+ * as a static) and returns it from getConfigurationSettings, once it's built it
+ * can't be changed so it can be read by any number of threads without locking.
+ * Looking up a setting doesn't allocate anything
+ */
+public class BatteryConfigurationSettings {
+	public final static BatteryConfigurationSettings NONE = builder().build();
+	private final Map<BatteryConfigurationSetting, ConfigurationSettingEntry> entries;
+	private final Collection<BatteryConfigurationSetting> supportedSettings;
+	private final Map<String, DataType> dataTypesByPublicName;
+
+	private BatteryConfigurationSettings(Map<BatteryConfigurationSetting, ConfigurationSettingEntry> entries) {
+		this.entries = entries;
+		this.supportedSettings = Collections.unmodifiableSet(entries.keySet());
+		Map<String, DataType> dataTypes = new LinkedHashMap<>();
+		entries.forEach((setting, entry) -> dataTypes.put(setting.getPublicName(), entry.getDataType()));
+		this.dataTypesByPublicName = Collections.unmodifiableMap(dataTypes);
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	// null if the setting isn't supported
+	public ConfigurationSettingEntry get(BatteryConfigurationSetting setting) {
+		return entries.get(setting);
+	}
+
+	public Collection<BatteryConfigurationSetting> getSupportedSettings() {
+		return supportedSettings;
+	}
+
+	public Map<String, DataType> getDataTypesByPublicName() {
+		return dataTypesByPublicName;
+	}
+
+	@Override
+	public String toString() {
+		return supportedSettings.toString();
+	}
+
+	public static class Builder {
+		private final Map<BatteryConfigurationSetting, ConfigurationSettingEntry> entries = new EnumMap<>(
+				BatteryConfigurationSetting.class);
+
+		private Builder() {
+		}
+
+		public Builder setting(BatteryConfigurationSetting setting, String privateName, DataType dataType,
+				boolean readOnly) {
+			entries.put(setting, new ConfigurationSettingEntry(privateName, dataType, readOnly));
+			return this;
+		}
+
+		// the builder could be used again, so the settings get their own copy
+		public BatteryConfigurationSettings build() {
+			return new BatteryConfigurationSettings(new EnumMap<>(entries));
+		}
+	}
+}
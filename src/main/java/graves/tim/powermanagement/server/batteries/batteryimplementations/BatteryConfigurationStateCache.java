@@ -0,0 +1,130 @@
+package graves.tim.powermanagement.server.batteries.batteryimplementations;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import io.helidon.config.Config;
+import lombok.Getter;
+import lombok.extern.java.Log;
+
+/**
+ * Remembers the last value the battery confirmed for each configuration
+ * setting, either because we read it or because it was returned from a write.
+ * This lets a write find the old value without having to ask the battery
+ * first, and lets us skip writes that would not change anything.
+ *
+ * Something other than us (e.g. the manufacturers app) can change the battery,
+ * so a confirmed value is only trusted for the configured TTL, after that we go
+ * back to the battery. A TTL of 0 disables the cache. Events changing a setting
+ * are usually much further apart than the TTL, so the telemetry poller re-reads
+ * the settings once they are half way through their TTL, that way the value is
+ * still trusted when the next event comes along and external changes are
+ * picked up within the TTL.
+ *
+ * A read of the battery can be in flight while we write to it, so reads take
+ * the settings generation before they start and only confirm their value if no
+ * write or invalidate has moved the generation on since.
+ */
+@Log
+public class BatteryConfigurationStateCache {
+	public final static String CONFIGURATION_CACHE_TTL_MILLIS = "configurationCacheTtlMillis";
+	public final static long CONFIGURATION_CACHE_TTL_MILLIS_DEFAULT = 60000;
+	@Getter
+	private final String batteryName;
+	private final long ttlNanos;
+	private final long refreshNanos;
+	// entries are only ever replaced (within the maps compute so the generation
+	// check and update can't be split) never removed, there's only a handful of
+	// settings
+	private final Map<String, ConfirmedValue> confirmedValues = new ConcurrentHashMap<>();
+
+	public BatteryConfigurationStateCache(String batteryName, Config batteryConfig) {
+		this(batteryName, batteryConfig.get(CONFIGURATION_CACHE_TTL_MILLIS).asLong()
+				.orElse(CONFIGURATION_CACHE_TTL_MILLIS_DEFAULT));
+	}
+
+	public BatteryConfigurationStateCache(String batteryName, long ttlMillis) {
+		this.batteryName = batteryName;
+		this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(ttlMillis, 0));
+		this.refreshNanos = ttlNanos / 2;
+		log.info("Configuration state cache for battery " + batteryName + " has a TTL of " + ttlMillis + "ms");
+	}
+
+	// returns null if we don't have a value we can trust
+	public String lookup(String settingName) {
+		ConfirmedValue confirmedValue = confirmedValues.get(settingName);
+		if ((confirmedValue == null) || (confirmedValue.value == null)
+				|| ((System.nanoTime() - confirmedValue.confirmedNanos) >= ttlNanos)) {
+			return null;
+		}
+		return confirmedValue.value;
+	}
+
+	// the settings with a confirmed value which is due to be re-read
+	public Collection<String> settingsNeedingRefresh() {
+		if (ttlNanos == 0) {
+			return Collections.emptyList();
+		}
+		long now = System.nanoTime();
+		List<String> settingNames = new ArrayList<>();
+		confirmedValues.forEach((settingName, confirmedValue) -> {
+			if ((confirmedValue.value != null) && ((now - confirmedValue.confirmedNanos) >= refreshNanos)) {
+				settingNames.add(settingName);
+			}
+		});
+		return settingNames;
+	}
+
+	// take this before reading the setting from the battery
+	public long generation(String settingName) {
+		ConfirmedValue confirmedValue = confirmedValues.get(settingName);
+		return confirmedValue == null ? 0 : confirmedValue.generation;
+	}
+
+	// the value the battery returned from a write, this always wins over any read
+	// that's in flight
+	public void confirm(String settingName, String value) {
+		confirmedValues.compute(settingName, (name, current) -> new ConfirmedValue(value, System.nanoTime(),
+				nextGeneration(current)));
+	}
+
+	// the value read from the battery, ignored if the setting has been written or
+	// invalidated since the read started
+	public void confirmRead(String settingName, String value, long readGeneration) {
+		confirmedValues.compute(settingName, (name, current) -> {
+			if ((current != null) && (current.generation != readGeneration)) {
+				log.fine("Not confirming " + settingName + " on battery " + batteryName
+						+ " as it's been changed since it was read");
+				return current;
+			}
+			return new ConfirmedValue(value, System.nanoTime(), readGeneration);
+		});
+	}
+
+	public void invalidate(String settingName) {
+		confirmedValues.compute(settingName,
+				(name, current) -> new ConfirmedValue(null, System.nanoTime(), nextGeneration(current)));
+	}
+
+	private static long nextGeneration(ConfirmedValue current) {
+		return current == null ? 1 : current.generation + 1;
+	}
+
+	private static class ConfirmedValue {
+		// null if we don't know the value
+		private final String value;
+		private final long confirmedNanos;
+		private final long generation;
+
+		private ConfirmedValue(String value, long confirmedNanos, long generation) {
+			this.value = value;
+			this.confirmedNanos = confirmedNanos;
+			this.generation = generation;
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package graves.tim.powermanagement.server.batteries.batteryimplementations;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import lombok.Getter;
+import lombok.extern.java.Log;
+
+/**
+ * Makes sure there is only ever one request for a given key (usually the
+ * endpoint on the battery) in flight at a time. Anyone who asks while there is
+ * already a request in flight waits for that and gets it's result (or it's
+ * exception) rather than sending an identical request of their own. Once the
+ * request completes the next caller starts a new one, nothing is cached here.
+ *
+ * There's one of these per battery, so the keys only need to identify the
+ * endpoint
+ */
+@Log
+public class BatterySingleFlight {
+	@Getter
+	private final String batteryName;
+	private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+	public BatterySingleFlight(String batteryName) {
+		this.batteryName = batteryName;
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T> T execute(String key, Supplier<T> request) {
+		CompletableFuture<Object> ourFlight = new CompletableFuture<>();
+		CompletableFuture<Object> existingFlight = inFlight.putIfAbsent(key, ourFlight);
+		if (existingFlight != null) {
+			log.finer(() -> "Battery " + batteryName + " joining in flight request for " + key);
+			try {
+				return (T) existingFlight.join();
+			} catch (CompletionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw e;
+			}
+		}
+		try {
+			T result = request.get();
+			ourFlight.complete(result);
+			return result;
+		} catch (RuntimeException | Error e) {
+			// anyone waiting on us needs to know or they'd wait forever
+			ourFlight.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlight.remove(key, ourFlight);
+		}
+	}
+
+	// something's been changed on the battery, anything already in flight may
+	// have the old values so make sure later callers send a new request rather than
+	// joining it. The callers already waiting still get it's result
+	public void forget() {
+		inFlight.clear();
+	}
+
+	// the async version shares the same in flight requests as the sync one, so
+	// sync and async callers can share each others results
+	@SuppressWarnings("unchecked")
+	public <T> CompletionStage<T> executeAsync(String key, Supplier<CompletionStage<T>> request) {
+		CompletableFuture<Object> ourFlight = new CompletableFuture<>();
+		CompletableFuture<Object> existingFlight = inFlight.putIfAbsent(key, ourFlight);
+		if (existingFlight != null) {
+			log.finer(() -> "Battery " + batteryName + " joining in flight request for " + key);
+			return (CompletionStage<T>) existingFlight.copy();
+		}
+		CompletionStage<T> requestStage;
+		try {
+			requestStage = request.get();
+		} catch (RuntimeException | Error e) {
+			ourFlight.completeExceptionally(e);
+			inFlight.remove(key, ourFlight);
+			throw e;
+		}
+		requestStage.whenComplete((result, failure) -> {
+			inFlight.remove(key, ourFlight);
+			if (failure == null) {
+				ourFlight.complete(result);
+			} else {
+				ourFlight.completeExceptionally(failure);
+			}
+		});
+		return (CompletionStage<T>) ourFlight.copy();
+	}
+}
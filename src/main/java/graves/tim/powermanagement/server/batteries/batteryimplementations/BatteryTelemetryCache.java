@@ -0,0 +1,227 @@
+package graves.tim.powermanagement.server.batteries.batteryimplementations;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.eclipse.microprofile.metrics.Counter;
+
+import graves.tim.powermanagement.server.connectionsupport.BatteryFaultTolerance;
+import io.helidon.config.Config;
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+import lombok.Getter;
+import lombok.extern.java.Log;
+
+/**
+ * A read through cache for the telemetry a battery returns, one of these is
+ * shared by all of the telemetry calls for a battery.
+ *
+ * Anything fetched within the TTL is returned without going to the battery
+ * unless the caller asks for fresh data. If going to the battery fails then
+ * data that's no older than the max staleness will be returned instead, after
+ * that the failure is passed on to the caller.
+ *
+ * A TTL of 0 means every call goes to the battery, though the result is still
+ * held for use if a later call fails.
+ *
+ * If the call was refused because the battery's circuit breaker is open (or
+ * it's bulkhead is full) then the last value we have is returned whatever it's
+ * age, we know the battery's in trouble and there's no point failing the caller
+ * as well. Stale json objects are returned with a flag and their age added so
+ * the caller can tell, for anything else the caller can use retrieveValue which
+ * says if the value is stale whatever it's type.
+ *
+ * Each entry has a generation which invalidate moves on, a fetch only stores
+ * it's result if the generation is the same as when it started, so a fetch
+ * that was in flight when the battery was changed can't put the old data back.
+ */
+@Log
+public class BatteryTelemetryCache {
+	public final static String TELEMETRY_CACHE_TTL_MILLIS = "telemetryCacheTtlMillis";
+	public final static long TELEMETRY_CACHE_TTL_MILLIS_DEFAULT = 5000;
+	public final static String TELEMETRY_CACHE_MAX_STALENESS_MILLIS = "telemetryCacheMaxStalenessMillis";
+	public final static long TELEMETRY_CACHE_MAX_STALENESS_MILLIS_DEFAULT = 60000;
+	public final static String STALE_FLAG = "stale";
+	public final static String STALE_AGE_MILLIS = "staleAgeMillis";
+	@Getter
+	private final String batteryName;
+	private final long ttlNanos;
+	private final long maxStalenessNanos;
+	private final Map<BatteryTelemetryType, CacheEntry> entries = new EnumMap<>(BatteryTelemetryType.class);
+
+	public BatteryTelemetryCache(String batteryName, Config batteryConfig) {
+		this(batteryName,
+				batteryConfig.get(TELEMETRY_CACHE_TTL_MILLIS).asLong().orElse(TELEMETRY_CACHE_TTL_MILLIS_DEFAULT),
+				batteryConfig.get(TELEMETRY_CACHE_MAX_STALENESS_MILLIS).asLong()
+						.orElse(TELEMETRY_CACHE_MAX_STALENESS_MILLIS_DEFAULT));
+	}
+
+	public BatteryTelemetryCache(String batteryName, long ttlMillis, long maxStalenessMillis) {
+		this.batteryName = batteryName;
+		this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(ttlMillis, 0));
+		// it makes no sense for stale data to be acceptable for less time than fresh
+		// data
+		this.maxStalenessNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(maxStalenessMillis, ttlMillis));
+		// setup all the entries now so the map is never changed once we're running
+		for (BatteryTelemetryType telemetryType : BatteryTelemetryType.values()) {
+			entries.put(telemetryType, new CacheEntry());
+		}
+		log.info("Telemetry cache for battery " + batteryName + " has a TTL of " + ttlMillis
+				+ "ms and a max staleness of " + maxStalenessMillis + "ms");
+	}
+
+	public <T> T retrieve(BatteryTelemetryType telemetryType, boolean fresh, Supplier<T> fetcher) {
+		return flagStale(retrieveValue(telemetryType, fresh, fetcher));
+	}
+
+	public <T> CompletionStage<T> retrieveAsync(BatteryTelemetryType telemetryType, boolean fresh,
+			Supplier<CompletionStage<T>> fetcher) {
+		return retrieveValueAsync(telemetryType, fresh, fetcher).thenApply(BatteryTelemetryCache::flagStale);
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T> BatteryTelemetryValue<T> retrieveValue(BatteryTelemetryType telemetryType, boolean fresh,
+			Supplier<T> fetcher) {
+		CacheEntry entry = entries.get(telemetryType);
+		long generation = entry.generation.get();
+		Snapshot snapshot = entry.current(generation);
+		long now = System.nanoTime();
+		if (!fresh && (snapshot != null) && ((now - snapshot.fetchedNanos) < ttlNanos)) {
+			count(entry.hits);
+			return BatteryTelemetryValue.fresh((T) snapshot.value);
+		}
+		count(entry.misses);
+		try {
+			T value = fetcher.get();
+			entry.store(value, generation);
+			return BatteryTelemetryValue.fresh(value);
+		} catch (RuntimeException e) {
+			// can we get away with what we already have ?
+			if (staleAllowed(snapshot, now, e)) {
+				return staleValue(telemetryType, entry, snapshot, now, e);
+			}
+			throw e;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T> CompletionStage<BatteryTelemetryValue<T>> retrieveValueAsync(BatteryTelemetryType telemetryType,
+			boolean fresh, Supplier<CompletionStage<T>> fetcher) {
+		CacheEntry entry = entries.get(telemetryType);
+		long generation = entry.generation.get();
+		Snapshot snapshot = entry.current(generation);
+		long now = System.nanoTime();
+		if (!fresh && (snapshot != null) && ((now - snapshot.fetchedNanos) < ttlNanos)) {
+			count(entry.hits);
+			return CompletableFuture.completedFuture(BatteryTelemetryValue.fresh((T) snapshot.value));
+		}
+		count(entry.misses);
+		CompletableFuture<BatteryTelemetryValue<T>> result = new CompletableFuture<>();
+		fetcher.get().whenComplete((value, failure) -> {
+			if (failure == null) {
+				entry.store(value, generation);
+				result.complete(BatteryTelemetryValue.fresh(value));
+			} else if (staleAllowed(snapshot, now, failure)) {
+				result.complete(staleValue(telemetryType, entry, snapshot, now, failure));
+			} else {
+				result.completeExceptionally(failure);
+			}
+		});
+		return result;
+	}
+
+	private boolean staleAllowed(Snapshot snapshot, long now, Throwable failure) {
+		if (snapshot == null) {
+			return false;
+		}
+		return ((now - snapshot.fetchedNanos) < maxStalenessNanos) || BatteryFaultTolerance.isRejection(failure);
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> BatteryTelemetryValue<T> staleValue(BatteryTelemetryType telemetryType, CacheEntry entry,
+			Snapshot snapshot, long now, Throwable failure) {
+		count(entry.staleHits);
+		long ageMillis = TimeUnit.NANOSECONDS.toMillis(now - snapshot.fetchedNanos);
+		log.warning("Problem retrieving " + telemetryType + " for battery " + batteryName + ", returning data that's "
+				+ ageMillis + "ms old, problem is " + failure.getLocalizedMessage());
+		return new BatteryTelemetryValue<>((T) snapshot.value, true, ageMillis);
+	}
+
+	// json objects have room for the stale flag, everything else is returned as is
+	@SuppressWarnings("unchecked")
+	private static <T> T flagStale(BatteryTelemetryValue<T> telemetryValue) {
+		if (telemetryValue.isStale() && (telemetryValue.getValue() instanceof JsonObject)) {
+			return (T) Json.createObjectBuilder((JsonObject) telemetryValue.getValue()).add(STALE_FLAG, true)
+					.add(STALE_AGE_MILLIS, telemetryValue.getStaleAgeMillis()).build();
+		}
+		return telemetryValue.getValue();
+	}
+
+	// something's been changed on the battery so what we have may well be wrong,
+	// this includes anything that's in flight right now
+	public void invalidate() {
+		entries.values().forEach(CacheEntry::invalidate);
+	}
+
+	// the counts are metrics counters, these are set when the batteries metrics
+	// are registered, anything before that isn't counted
+	public void useCounters(BatteryTelemetryType telemetryType, Counter hits, Counter misses, Counter staleHits) {
+		CacheEntry entry = entries.get(telemetryType);
+		entry.hits = hits;
+		entry.misses = misses;
+		entry.staleHits = staleHits;
+	}
+
+	private static void count(Counter counter) {
+		if (counter != null) {
+			counter.inc();
+		}
+	}
+
+	private static class CacheEntry {
+		// replaced as a whole so a reader always sees a value and it's matching time
+		private volatile Snapshot snapshot;
+		private final AtomicLong generation = new AtomicLong(0);
+		private volatile Counter hits;
+		private volatile Counter misses;
+		private volatile Counter staleHits;
+
+		// a snapshot from an older generation may have been stored just after an
+		// invalidate, so it's ignored
+		private Snapshot current(long currentGeneration) {
+			Snapshot current = snapshot;
+			if ((current == null) || (current.generation != currentGeneration)) {
+				return null;
+			}
+			return current;
+		}
+
+		private void store(Object value, long fetchGeneration) {
+			if (generation.get() == fetchGeneration) {
+				snapshot = new Snapshot(value, System.nanoTime(), fetchGeneration);
+			}
+		}
+
+		private void invalidate() {
+			generation.incrementAndGet();
+			snapshot = null;
+		}
+	}
+
+	private static class Snapshot {
+		private final Object value;
+		private final long fetchedNanos;
+		private final long generation;
+
+		private Snapshot(Object value, long fetchedNanos, long generation) {
+			this.value = value;
+			this.fetchedNanos = fetchedNanos;
+			this.generation = generation;
+		}
+	}
+}
@@ -0,0 +1,19 @@
+package graves.tim.powermanagement.server.batteries.batteryimplementations;
+
+/**
+ * The different sets of telemetry a battery can return, each one is held
+ * separately in the battery's telemetry cache. CHARGE_LEVEL is for batteries
+ * that can get the charge level without retrieving all of the latest data
+ */
+public enum BatteryTelemetryType {
+	STATUS, LATEST_DATA, POWER_METER, CHARGE_LEVEL;
+
+	public static BatteryTelemetryType getByName(String telemetryTypeName) {
+		for (BatteryTelemetryType telemetryType : BatteryTelemetryType.values()) {
+			if (telemetryType.name().equalsIgnoreCase(telemetryTypeName)) {
+				return telemetryType;
+			}
+		}
+		return null;
+	}
+}
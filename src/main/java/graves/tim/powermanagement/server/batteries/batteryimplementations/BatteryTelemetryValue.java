@@ -0,0 +1,31 @@
+package graves.tim.powermanagement.server.batteries.batteryimplementations;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * A value from the telemetry cache along with whether it's stale, i.e. getting
+ * fresh data from the battery failed and this is what we had from before. For
+ * json objects the cache also adds the stale flag to the object itself, other
+ * types (e.g. the charge level or the power meter array) have no where to put
+ * it, so callers who need to know should use this.
+ */
+@Getter
+@ToString
+public class BatteryTelemetryValue<T> {
+	public final static long NOT_STALE = -1;
+	private final T value;
+	private final boolean stale;
+	// how old the value was when it was returned, NOT_STALE if it's not stale
+	private final long staleAgeMillis;
+
+	BatteryTelemetryValue(T value, boolean stale, long staleAgeMillis) {
+		this.value = value;
+		this.stale = stale;
+		this.staleAgeMillis = staleAgeMillis;
+	}
+
+	static <T> BatteryTelemetryValue<T> fresh(T value) {
+		return new BatteryTelemetryValue<>(value, false, NOT_STALE);
+	}
+}
@@ -0,0 +1,104 @@
+package graves.tim.powermanagement.server.batteries.batteryimplementations.sonnen;
+
+import java.io.ByteArrayInputStream;
+
+import jakarta.json.Json;
+import jakarta.json.JsonException;
+import jakarta.json.stream.JsonParser;
+import jakarta.json.stream.JsonParser.Event;
+import jakarta.json.stream.JsonParserFactory;
+
+/**
+ * Pulls individual values out of the top level of a battery response without
+ * building a JsonObject for the whole thing. The parser walks the response
+ * until it finds the key, anything else (including nested objects and arrays)
+ * is skipped over rather than being built.
+ *
+ * The parsers come from a shared factory, Json.createParser looks up the JSON
+ * provider every time it's called which costs more than parsing a small
+ * response
+ */
+public class SonnenJsonExtractor {
+	private final static String TRUE_TEXT = "true";
+	private final static String FALSE_TEXT = "false";
+	private final static String NULL_TEXT = "null";
+	private final static JsonParserFactory PARSER_FACTORY = Json.createParserFactory(null);
+
+	private SonnenJsonExtractor() {
+	}
+
+	// returns the text of the value, strings are returned without their quotes,
+	// null if the key isn't there
+	public static String extractText(byte[] response, String key) {
+		try (JsonParser parser = PARSER_FACTORY.createParser(new ByteArrayInputStream(response))) {
+			Event valueEvent = findTopLevelValue(parser, key);
+			if (valueEvent == null) {
+				return null;
+			}
+			switch (valueEvent) {
+			case VALUE_STRING:
+			case VALUE_NUMBER:
+				return parser.getString();
+			case VALUE_TRUE:
+				return TRUE_TEXT;
+			case VALUE_FALSE:
+				return FALSE_TEXT;
+			case VALUE_NULL:
+				return NULL_TEXT;
+			default:
+				// an object or array, these are rare so just build that part
+				return parser.getValue().toString();
+			}
+		}
+	}
+
+	// the value can be a number or a string holding a number, throws a
+	// JsonException if the key isn't there or isn't a number
+	public static int extractInt(byte[] response, String key) {
+		try (JsonParser parser = PARSER_FACTORY.createParser(new ByteArrayInputStream(response))) {
+			Event valueEvent = findTopLevelValue(parser, key);
+			if (valueEvent == null) {
+				throw new JsonException("Response does not contain " + key);
+			}
+			switch (valueEvent) {
+			case VALUE_NUMBER:
+				return parser.getInt();
+			case VALUE_STRING:
+				try {
+					return Integer.parseInt(parser.getString().trim());
+				} catch (NumberFormatException e) {
+					throw new JsonException("Value of " + key + " is " + parser.getString() + " which is not a number",
+							e);
+				}
+			default:
+				throw new JsonException("Value of " + key + " is a " + valueEvent + " not a number");
+			}
+		}
+	}
+
+	// leaves the parser on the value of the key, returning the event for the value,
+	// or null if the key isn't in the top level object
+	private static Event findTopLevelValue(JsonParser parser, String key) {
+		if (!parser.hasNext() || (parser.next() != Event.START_OBJECT)) {
+			throw new JsonException("Response is not a JSON object");
+		}
+		while (parser.hasNext()) {
+			Event event = parser.next();
+			if (event == Event.END_OBJECT) {
+				return null;
+			}
+			// at this level everything is a key followed by it's value
+			boolean found = parser.getString().equals(key);
+			Event valueEvent = parser.next();
+			if (found) {
+				return valueEvent;
+			}
+			if (valueEvent == Event.START_OBJECT) {
+				parser.skipObject();
+			} else if (valueEvent == Event.START_ARRAY) {
+				parser.skipArray();
+			}
+		}
+		return null;
+	}
+}
@@ -1,5 +1,7 @@
 package graves.tim.powermanagement.server.batteries.batteryimplementations.sonnen;
 
+import java.util.concurrent.CompletionStage;
+
 import org.eclipse.microprofile.rest.client.inject.RegisterRestClient;
 
 import jakarta.json.JsonArray;
@@ -40,4 +42,56 @@ public interface SonnenV2 {
 	@Produces(MediaType.APPLICATION_JSON)
 	@Consumes(MediaType.APPLICATION_JSON)
 	public JsonObject setConfiguration(String settingString);
+
+	// the raw responses, for when we only want a value or two out of them, these
+	// get pulled out by SonnenJsonExtractor without building the whole JsonObject
+
+	@GET
+	@Path("/latestdata")
+	@Produces(MediaType.APPLICATION_JSON)
+	public byte[] getLatestDataBytes();
+
+	@GET
+	@Path("/configurations/{configName}")
+	@Produces(MediaType.APPLICATION_JSON)
+	public byte[] getConfigurationBytes(@PathParam("configName") String configName);
+
+	// async versions of the above, the rest client completes these from it's own
+	// executor so the caller isn't blocked while waiting for the battery
+
+	@GET
+	@Path("/status")
+	@Produces(MediaType.APPLICATION_JSON)
+	public CompletionStage<JsonObject> getStatusAsync();
+
+	@GET
+	@Path("/latestdata")
+	@Produces(MediaType.APPLICATION_JSON)
+	public CompletionStage<JsonObject> getLatestDataAsync();
+
+	@GET
+	@Path("/powermeter")
+	@Produces(MediaType.APPLICATION_JSON)
+	public CompletionStage<JsonArray> getPowerMeterAsync();
+
+	@GET
+	@Path("/configurations/{configName}")
+	@Produces(MediaType.APPLICATION_JSON)
+	public CompletionStage<JsonObject> getConfigurationAsync(@PathParam("configName") String configName);
+
+	@GET
+	@Path("/latestdata")
+	@Produces(MediaType.APPLICATION_JSON)
+	public CompletionStage<byte[]> getLatestDataBytesAsync();
+
+	@GET
+	@Path("/configurations/{configName}")
+	@Produces(MediaType.APPLICATION_JSON)
+	public CompletionStage<byte[]> getConfigurationBytesAsync(@PathParam("configName") String configName);
+
+	@PUT
+	@Path("/configurations")
+	@Produces(MediaType.APPLICATION_JSON)
+	@Consumes(MediaType.APPLICATION_JSON)
+	public CompletionStage<JsonObject> setConfigurationAsync(String settingString);
 }
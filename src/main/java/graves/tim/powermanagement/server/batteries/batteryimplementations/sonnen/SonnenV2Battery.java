@@ -3,8 +3,12 @@ package graves.tim.powermanagement.server.batteries.batteryimplementations.sonne
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
@@ -24,13 +28,23 @@ import graves.tim.powermanagement.common.exceptions.BatteryUnauthorisedAccessExc
 import graves.tim.powermanagement.common.exceptions.BatteryUnexpectedResponseException;
 import graves.tim.powermanagement.common.exceptions.BatteryUnknownSettingException;
 import graves.tim.powermanagement.common.exceptions.BatteryUnsupportedOperationException;
+import graves.tim.powermanagement.server.batteries.BatteryCompletionStages;
+import graves.tim.powermanagement.server.batteries.batteryimplementations.BatteryConfigurationSettings;
+import graves.tim.powermanagement.server.batteries.batteryimplementations.BatteryConfigurationStateCache;
 import graves.tim.powermanagement.server.batteries.batteryimplementations.BatteryCore;
-import graves.tim.powermanagement.server.batteries.batteryimplementations.ConfigurationSettingEntry;
+import graves.tim.powermanagement.server.batteries.batteryimplementations.BatterySingleFlight;
+import graves.tim.powermanagement.server.batteries.batteryimplementations.BatteryTelemetryCache;
+import graves.tim.powermanagement.server.batteries.batteryimplementations.BatteryTelemetryType;
 import graves.tim.powermanagement.server.batteries.manager.BatteryData;
 import graves.tim.powermanagement.server.connectionsupport.AuthException;
+import graves.tim.powermanagement.server.connectionsupport.BatteryConnectionPool;
+import graves.tim.powermanagement.server.connectionsupport.BatteryFaultTolerance;
 import io.helidon.config.Config;
+import jakarta.json.Json;
 import jakarta.json.JsonArray;
 import jakarta.json.JsonObject;
+import jakarta.json.JsonObjectBuilder;
+import jakarta.json.JsonString;
 import jakarta.json.JsonValue;
 import lombok.Getter;
 import lombok.Setter;
@@ -49,40 +63,56 @@ public class SonnenV2Battery extends BatteryCore {
 	private final static String TIME_OF_USE_SCHEDULE = "EM_ToU_Schedule";
 	private final static String OPERATING_MODE = "EM_OperatingMode";
 	private static final int MAXIMUM_CHARGE_LEVEL = 100;
+	// keys for the single flight, these match the endpoint paths
+	private final static String STATUS_PATH = "/status";
+	private final static String LATEST_DATA_PATH = "/latestdata";
+	private final static String POWER_METER_PATH = "/powermeter";
+	private final static String CONFIGURATIONS_PATH = "/configurations/";
+	// the raw requests return something different, so need their own keys
+	private final static String CHARGE_LEVEL_KEY = LATEST_DATA_PATH + "/" + CURRENT_CHARGE_LEVEL;
+	private final static String CONFIGURATION_VALUE_KEY = CONFIGURATIONS_PATH + "value/";
+	private final static BatteryConfigurationSettings CONFIGURATION_SETTINGS = BatteryConfigurationSettings.builder()
+			.setting(BatteryConfigurationSetting.RESERVE_LEVEL, MINIMUM_DISHARGE_LEVEL, DataType.INTEGER, false)
+			.setting(BatteryConfigurationSetting.TIME_OF_USE_SCHEDULE, TIME_OF_USE_SCHEDULE, DataType.STRING, false)
+			.setting(BatteryConfigurationSetting.OPERATING_MODE, OPERATING_MODE, DataType.STRING, false).build();
 
 	private SonnenV2 battery;
+	@Getter
+	@JsonIgnore
+	private final BatteryTelemetryCache telemetryCache;
+	@Getter
+	@JsonIgnore
+	private final BatteryConnectionPool connectionPool;
+	@Getter
+	@JsonIgnore
+	private final BatteryFaultTolerance faultTolerance;
+	private final BatterySingleFlight singleFlight;
+	private final BatteryConfigurationStateCache configurationStateCache;
 
 	public SonnenV2Battery(String batteryConfigName, Config batteryConfig) throws BatteryException, AuthException {
-		battery = SonnenV2BatteryClientFactory.buildClient(batteryConfigName, batteryConfig);
+		connectionPool = new BatteryConnectionPool(batteryConfigName, batteryConfig);
+		faultTolerance = new BatteryFaultTolerance(batteryConfigName, batteryConfig);
+		battery = SonnenV2BatteryClientFactory.buildClient(batteryConfigName, batteryConfig, connectionPool,
+				faultTolerance);
+		telemetryCache = new BatteryTelemetryCache(batteryConfigName, batteryConfig);
+		singleFlight = new BatterySingleFlight(batteryConfigName);
+		configurationStateCache = new BatteryConfigurationStateCache(batteryConfigName, batteryConfig);
+		// the battery isn't contacted here, that's done when the battery manager warms
+		// it up so an unreachable battery doesn't hold up startup
 		log.info("Built battery");
-		int powerLevel = -1;
-		try {
-			powerLevel = retrieveCurrentChargeLevel();
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
-		log.info("Battery current power level is " + powerLevel);
 
 		synchronized (SonnenV2Battery.class) {
 			if (!mapsConfigured) {
-				setupSupportedConfigurations();
 				setupOperatingModes();
 				mapsConfigured = true;
 			}
 		}
 	}
 
-	/**
-	 * 
-	 */
-	private static void setupSupportedConfigurations() {
-		configurationSettings.put(BatteryConfigurationSetting.RESERVE_LEVEL,
-				new ConfigurationSettingEntry(MINIMUM_DISHARGE_LEVEL, DataType.INTEGER, false));
-		configurationSettings.put(BatteryConfigurationSetting.TIME_OF_USE_SCHEDULE,
-				new ConfigurationSettingEntry(TIME_OF_USE_SCHEDULE, DataType.STRING, false));
-		configurationSettings.put(BatteryConfigurationSetting.OPERATING_MODE,
-				new ConfigurationSettingEntry(OPERATING_MODE, DataType.STRING, false));
-		log.info("Configued settings are " + configurationSettings.keySet());
+	@Override
+	@JsonIgnore
+	public BatteryConfigurationSettings getConfigurationSettings() {
+		return CONFIGURATION_SETTINGS;
 	}
 
 	private void setupOperatingModes() {
@@ -95,22 +125,43 @@ public class SonnenV2Battery extends BatteryCore {
 	@Override
 	public JsonObject retrieveStatus() throws BatteryUnauthorisedAccessException, BatteryInvalidParameterException,
 			BatteryUnknownSettingException {
+		return retrieveStatus(false);
+	}
+
+	@Override
+	public JsonObject retrieveStatus(boolean fresh) throws BatteryUnauthorisedAccessException,
+			BatteryInvalidParameterException, BatteryUnknownSettingException {
 		log.fine("Getting status");
-		return battery.getStatus();
+		return telemetryCache.retrieve(BatteryTelemetryType.STATUS, fresh,
+				() -> singleFlight.execute(STATUS_PATH, battery::getStatus));
 	}
 
 	@Override
 	public JsonArray retrievePowerMeter() throws BatteryUnauthorisedAccessException, BatteryInvalidParameterException,
 			BatteryUnknownSettingException {
+		return retrievePowerMeter(false);
+	}
+
+	@Override
+	public JsonArray retrievePowerMeter(boolean fresh) throws BatteryUnauthorisedAccessException,
+			BatteryInvalidParameterException, BatteryUnknownSettingException {
 		log.fine("Getting power meter");
-		return battery.getPowerMeter();
+		return telemetryCache.retrieve(BatteryTelemetryType.POWER_METER, fresh,
+				() -> singleFlight.execute(POWER_METER_PATH, battery::getPowerMeter));
 	}
 
 	@Override
 	public JsonObject retrieveLatestData() throws BatteryUnauthorisedAccessException, BatteryInvalidParameterException,
 			BatteryUnknownSettingException {
+		return retrieveLatestData(false);
+	}
+
+	@Override
+	public JsonObject retrieveLatestData(boolean fresh) throws BatteryUnauthorisedAccessException,
+			BatteryInvalidParameterException, BatteryUnknownSettingException {
 		log.fine("Getting latest data");
-		return battery.getLatestData();
+		return telemetryCache.retrieve(BatteryTelemetryType.LATEST_DATA, fresh,
+				() -> singleFlight.execute(LATEST_DATA_PATH, battery::getLatestData));
 	}
 
 	@Override
@@ -130,10 +181,10 @@ public class SonnenV2Battery extends BatteryCore {
 	public int applyBatteryReserveLevel(int reserveLevel)
 			throws BatteryUnauthorisedAccessException, BatteryInvalidParameterException, BatteryUnknownSettingException,
 			BatteryUnsupportedOperationException, BatteryProgrammingProblemException, BatteryReadOnlySettingException {
-		int oldLevel = retrieveBatteryReserveLevel();
 		try {
-			updateConfiguration(BatteryConfigurationSetting.RESERVE_LEVEL, DataItem.asInteger(reserveLevel));
-			return oldLevel;
+			// the update gives us the old level, no need to ask for it separately
+			return updateConfiguration(BatteryConfigurationSetting.RESERVE_LEVEL, DataItem.asInteger(reserveLevel))
+					.integerValue();
 		} catch (DataItemIncorrectIntegerFormatException | DataItemIncorrectBooleanFormatException
 				| DataItemIncorrectTypeException | DataItemNotFoundException e) {
 			throw new BatteryProgrammingProblemException(
@@ -149,69 +200,280 @@ public class SonnenV2Battery extends BatteryCore {
 	@Override
 	public int retrieveCurrentChargeLevel() throws BatteryUnauthorisedAccessException, BatteryInvalidParameterException,
 			BatteryUnknownSettingException, BatteryUnsupportedOperationException {
-		return retrieveLatestData().getInt(CURRENT_CHARGE_LEVEL);
+		return retrieveCurrentChargeLevel(false);
+	}
+
+	@Override
+	public int retrieveCurrentChargeLevel(boolean fresh) throws BatteryUnauthorisedAccessException,
+			BatteryInvalidParameterException, BatteryUnknownSettingException, BatteryUnsupportedOperationException {
+		// we only want the one value, so don't build the whole of the latest data
+		return telemetryCache.retrieve(BatteryTelemetryType.CHARGE_LEVEL, fresh,
+				() -> singleFlight.execute(CHARGE_LEVEL_KEY, () -> SonnenJsonExtractor
+						.extractInt(battery.getLatestDataBytes(), CURRENT_CHARGE_LEVEL)));
+	}
+
+	// the async versions go through the same telemetry cache, single flight and
+	// configuration state as the sync ones, only the request to the battery is
+	// different
+
+	@Override
+	public CompletionStage<JsonObject> retrieveStatusAsync(boolean fresh) {
+		return telemetryCache.retrieveAsync(BatteryTelemetryType.STATUS, fresh,
+				() -> singleFlight.executeAsync(STATUS_PATH, battery::getStatusAsync));
+	}
+
+	@Override
+	public CompletionStage<JsonObject> retrieveLatestDataAsync(boolean fresh) {
+		return telemetryCache.retrieveAsync(BatteryTelemetryType.LATEST_DATA, fresh,
+				() -> singleFlight.executeAsync(LATEST_DATA_PATH, battery::getLatestDataAsync));
+	}
+
+	@Override
+	public CompletionStage<JsonArray> retrievePowerMeterAsync(boolean fresh) {
+		return telemetryCache.retrieveAsync(BatteryTelemetryType.POWER_METER, fresh,
+				() -> singleFlight.executeAsync(POWER_METER_PATH, battery::getPowerMeterAsync));
+	}
+
+	@Override
+	public CompletionStage<Integer> retrieveCurrentChargeLevelAsync(boolean fresh) {
+		return telemetryCache.retrieveAsync(BatteryTelemetryType.CHARGE_LEVEL, fresh,
+				() -> singleFlight.executeAsync(CHARGE_LEVEL_KEY, () -> battery.getLatestDataBytesAsync()
+						.thenApply(latestData -> SonnenJsonExtractor.extractInt(latestData, CURRENT_CHARGE_LEVEL))));
+	}
+
+	@Override
+	public CompletionStage<Integer> retrieveBatteryReserveLevelAsync() {
+		return currentConfigurationValueAsync(MINIMUM_DISHARGE_LEVEL, false)
+				.thenApply(reserveLevel -> Integer.parseInt(reserveLevel.trim()));
+	}
+
+	@Override
+	public CompletionStage<Void> refreshConfigurationStateAsync() {
+		return CompletableFuture.allOf(configurationStateCache.settingsNeedingRefresh().stream()
+				.map(settingName -> currentConfigurationValueAsync(settingName, false).toCompletableFuture())
+				.toArray(CompletableFuture[]::new));
+	}
+
+	@Override
+	public CompletionStage<Integer> applyBatteryReserveLevelAsync(int reserveLevel) {
+		try {
+			checkConfigurationUpdate(BatteryConfigurationSetting.RESERVE_LEVEL, DataItem.asInteger(reserveLevel));
+		} catch (BatteryUnknownSettingException | BatteryReadOnlySettingException
+				| BatteryInvalidParameterException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+		return applyConfigurationAsync(MINIMUM_DISHARGE_LEVEL, String.valueOf(reserveLevel)).thenApply(oldValue -> {
+			int oldLevel = Integer.parseInt(oldValue.trim());
+			recordConfigurationUpdate(BatteryConfigurationSetting.RESERVE_LEVEL, DataItem.asInteger(oldLevel));
+			return oldLevel;
+		});
 	}
 
 	@Override
 	public String setConfiguration(String settingName, String settingValue) throws BatteryUnauthorisedAccessException,
 			BatteryInvalidParameterException, BatteryUnknownSettingException {
 		log.info("Setting string configuration " + settingName + " to " + settingValue);
-		String oldValue = battery.getConfiguration(settingName).getString(settingName);
-		String setPayload = "{\"" + settingName + "\":\"" + settingValue + "\"}";
-		log.info("Setting string configuration old value for " + settingName + " was " + settingValue + " set data is "
-				+ setPayload);
-		String newValue = battery.setConfiguration(setPayload).getString(settingName);
-		log.info("Set " + settingName + " to " + settingValue + " old value is " + oldValue
-				+ " value returned from set is " + newValue);
-		return oldValue;
+		return applyConfiguration(settingName, settingValue);
 	}
 
 	@Override
 	public Integer setConfiguration(String settingName, Integer settingValue) throws BatteryUnauthorisedAccessException,
 			BatteryInvalidParameterException, BatteryUnknownSettingException {
-
 		log.info("Setting integer configuration " + settingName + " to " + settingValue);
-		int oldValue = Integer.parseInt(
-				battery.getConfiguration(settingName).get(settingName).toString().replaceAll(STRING_QUOTE, "").trim());
-		String setPayload = "{\"" + settingName + "\":\"" + settingValue + "\"}";
-		log.info("Setting int configuration old value for " + settingName + " was " + settingValue + " set data is "
-				+ setPayload);
-		int newValue = Integer.parseInt(
-				battery.setConfiguration(setPayload).get(settingName).toString().replaceAll(STRING_QUOTE, "").trim());
-		log.info("Set " + settingName + " to " + settingValue + " old value is " + oldValue
-				+ " value returned from set is " + newValue);
-		return oldValue;
+		return Integer.parseInt(applyConfiguration(settingName, String.valueOf(settingValue)).trim());
 	}
 
 	@Override
 	public Boolean setConfiguration(String settingName, Boolean settingValue) throws BatteryUnauthorisedAccessException,
 			BatteryInvalidParameterException, BatteryUnknownSettingException {
-
 		log.fine("Setting boolean configuration " + settingName + " to " + settingValue);
-		boolean oldValue = battery.getConfiguration(settingName).getBoolean(settingName);
+		return Boolean.parseBoolean(applyConfiguration(settingName, String.valueOf(settingValue)).trim());
+	}
+
+	// the configurations endpoint takes an object, so everything that actually
+	// needs changing goes in a single PUT
+	@Override
+	public Map<BatteryConfigurationSetting, DataItem> writeConfigurations(
+			Map<BatteryConfigurationSetting, DataItem> settings) throws BatteryInvalidParameterException,
+			BatteryUnknownSettingException, DataItemIncorrectBooleanFormatException, DataItemIncorrectTypeException,
+			DataItemIncorrectIntegerFormatException {
+		Map<BatteryConfigurationSetting, DataItem> oldValues = new LinkedHashMap<>();
+		Map<String, String> changes = new LinkedHashMap<>();
+		for (Map.Entry<BatteryConfigurationSetting, DataItem> setting : settings.entrySet()) {
+			String settingName = getPrivateConfigurationName(setting.getKey());
+			DataType dataType = getPrivateConfigurationDataType(setting.getKey());
+			String settingValue = configurationText(dataType, setting.getValue());
+			String oldValue = currentConfigurationValue(settingName, true);
+			oldValues.put(setting.getKey(), configurationDataItem(dataType, oldValue));
+			if (oldValue.equals(settingValue)) {
+				log.info("Setting " + settingName + " is already " + settingValue + ", not sending it to the battery");
+			} else {
+				changes.put(settingName, settingValue);
+			}
+		}
+		if (changes.isEmpty()) {
+			return oldValues;
+		}
+		JsonObjectBuilder setPayloadBuilder = Json.createObjectBuilder();
+		changes.forEach(setPayloadBuilder::add);
+		String setPayload = setPayloadBuilder.build().toString();
+		log.info("Setting " + changes.size() + " configurations, set data is " + setPayload);
+		JsonObject setResponse;
+		try {
+			setResponse = battery.setConfiguration(setPayload);
+		} catch (RuntimeException e) {
+			forgetInFlightReads();
+			changes.keySet().forEach(configurationStateCache::invalidate);
+			throw e;
+		}
+		forgetInFlightReads();
+		for (String settingName : changes.keySet()) {
+			configurationStateCache.confirm(settingName, settingText(setResponse.get(settingName)));
+		}
+		telemetryCache.invalidate();
+		return oldValues;
+	}
+
+	private static String configurationText(DataType dataType, DataItem dataItem)
+			throws BatteryInvalidParameterException, DataItemIncorrectTypeException,
+			DataItemIncorrectIntegerFormatException, DataItemIncorrectBooleanFormatException {
+		switch (dataType) {
+		case BOOLEAN:
+			return String.valueOf(dataItem.booleanValue());
+		case INTEGER:
+			return String.valueOf(dataItem.integerValue());
+		case STRING:
+			return dataItem.stringValue();
+		default:
+			throw new BatteryInvalidParameterException(
+					"Data type " + dataType + " is not a supported configuration setting type for this battery");
+		}
+	}
+
+	private static DataItem configurationDataItem(DataType dataType, String settingValue)
+			throws BatteryInvalidParameterException {
+		switch (dataType) {
+		case BOOLEAN:
+			return DataItem.asBoolean(Boolean.parseBoolean(settingValue.trim()));
+		case INTEGER:
+			return DataItem.asInteger(Integer.parseInt(settingValue.trim()));
+		case STRING:
+			return DataItem.asString(settingValue);
+		default:
+			throw new BatteryInvalidParameterException(
+					"Data type " + dataType + " is not a supported configuration setting type for this battery");
+		}
+	}
+
+	// the battery takes all settings as strings and the old value comes from the
+	// state cache if it can, if the setting already has the value we want there's
+	// no need to write it at all. What the battery says it set is remembered for
+	// next time
+	private String applyConfiguration(String settingName, String settingValue) throws BatteryUnknownSettingException {
+		String oldValue = currentConfigurationValue(settingName, true);
+		if (oldValue.equals(settingValue)) {
+			log.info("Setting " + settingName + " is already " + settingValue + ", not sending it to the battery");
+			return oldValue;
+		}
 		String setPayload = "{\"" + settingName + "\":\"" + settingValue + "\"}";
-		log.info("Setting boolean configuration old value for " + settingName + " was " + settingValue + " set data is "
+		log.info("Setting configuration old value for " + settingName + " was " + oldValue + " set data is "
 				+ setPayload);
-		boolean newValue = battery.setConfiguration(setPayload).getBoolean(settingName);
-
-		log.fine("Set " + settingName + " to " + settingValue + " old value is " + oldValue
+		String newValue;
+		try {
+			newValue = settingText(battery.setConfiguration(setPayload).get(settingName));
+		} catch (RuntimeException e) {
+			// we don't know if it got applied or not
+			forgetInFlightReads();
+			configurationStateCache.invalidate(settingName);
+			throw e;
+		}
+		forgetInFlightReads();
+		configurationStateCache.confirm(settingName, newValue);
+		log.info("Set " + settingName + " to " + settingValue + " old value is " + oldValue
 				+ " value returned from set is " + newValue);
+		// changing the configuration may well change what the battery reports
+		telemetryCache.invalidate();
 		return oldValue;
 	}
 
-	public JsonObject getConfigurationItemAsJson(String settingName) throws BatteryUnauthorisedAccessException,
-			BatteryInvalidParameterException, BatteryUnknownSettingException {
-		log.fine("Getting configuration item " + settingName);
-		return battery.getConfiguration(settingName);
+	private String currentConfigurationValue(String settingName, boolean allowCached)
+			throws BatteryUnknownSettingException {
+		if (allowCached) {
+			String cachedValue = configurationStateCache.lookup(settingName);
+			if (cachedValue != null) {
+				log.fine("Setting " + settingName + " has confirmed value " + cachedValue);
+				return cachedValue;
+			}
+		}
+		long generation = configurationStateCache.generation(settingName);
+		return confirmSetting(settingName, fetchConfigurationValue(settingName), generation);
 	}
 
-	@Override
-	public String getConfigurationItemAsString(String settingName) throws BatteryUnauthorisedAccessException,
-			BatteryInvalidParameterException, BatteryUnknownSettingException {
-		JsonValue settingValue = battery.getConfiguration(settingName).get(settingName);
-		if (settingValue == null) {
+	private CompletionStage<String> currentConfigurationValueAsync(String settingName, boolean allowCached) {
+		if (allowCached) {
+			String cachedValue = configurationStateCache.lookup(settingName);
+			if (cachedValue != null) {
+				return CompletableFuture.completedFuture(cachedValue);
+			}
+		}
+		long generation = configurationStateCache.generation(settingName);
+		return singleFlight
+				.executeAsync(CONFIGURATION_VALUE_KEY + settingName,
+						() -> battery.getConfigurationBytesAsync(settingName)
+								.thenApply(configuration -> SonnenJsonExtractor.extractText(configuration, settingName)))
+				.thenApply(setting -> BatteryCompletionStages
+						.callInStage(() -> confirmSetting(settingName, setting, generation)));
+	}
+
+	// generation is the settings generation from before the read started
+	private String confirmSetting(String settingName, String setting, long generation)
+			throws BatteryUnknownSettingException {
+		if (setting == null) {
 			throw new BatteryUnknownSettingException("Unable to locate setting " + settingName);
 		}
+		configurationStateCache.confirmRead(settingName, setting, generation);
+		return setting;
+	}
+
+	// once the battery has been written to any reads that are in flight may have
+	// the old values, this must be done before the caches generations are moved on
+	// so nothing can pick up the new generation and then join an old read
+	private void forgetInFlightReads() {
+		singleFlight.forget();
+	}
+
+	private CompletionStage<String> applyConfigurationAsync(String settingName, String settingValue) {
+		return currentConfigurationValueAsync(settingName, true).thenCompose(oldValue -> {
+			if (oldValue.equals(settingValue)) {
+				log.info("Setting " + settingName + " is already " + settingValue + ", not sending it to the battery");
+				return CompletableFuture.completedFuture(oldValue);
+			}
+			String setPayload = "{\"" + settingName + "\":\"" + settingValue + "\"}";
+			log.info("Setting configuration old value for " + settingName + " was " + oldValue + " set data is "
+					+ setPayload);
+			return battery.setConfigurationAsync(setPayload).handle((setResponse, failure) -> {
+				forgetInFlightReads();
+				if (failure != null) {
+					configurationStateCache.invalidate(settingName);
+					throw new CompletionException(BatteryCompletionStages.unwrap(failure));
+				}
+				String newValue = settingText(setResponse.get(settingName));
+				configurationStateCache.confirm(settingName, newValue);
+				log.info("Set " + settingName + " to " + settingValue + " old value is " + oldValue
+						+ " value returned from set is " + newValue);
+				telemetryCache.invalidate();
+				return oldValue;
+			});
+		});
+	}
+
+	private static String settingText(JsonValue settingValue) {
+		if (settingValue == null) {
+			return null;
+		}
+		if (settingValue instanceof JsonString) {
+			return ((JsonString) settingValue).getString();
+		}
 		String setting = settingValue.toString();
 		// remove and leading or trailing quotes
 		if (setting.startsWith(STRING_QUOTE)) {
@@ -220,6 +482,30 @@ public class SonnenV2Battery extends BatteryCore {
 		if (setting.endsWith(STRING_QUOTE)) {
 			setting = setting.substring(0, setting.length() - STRING_QUOTE.length());
 		}
+		return setting;
+	}
+
+	// concurrent callers asking for the same setting share a single request
+	private JsonObject fetchConfiguration(String settingName) {
+		return singleFlight.execute(CONFIGURATIONS_PATH + settingName, () -> battery.getConfiguration(settingName));
+	}
+
+	// just the value of the setting, this is pulled straight out of the response
+	private String fetchConfigurationValue(String settingName) {
+		return singleFlight.execute(CONFIGURATION_VALUE_KEY + settingName,
+				() -> SonnenJsonExtractor.extractText(battery.getConfigurationBytes(settingName), settingName));
+	}
+
+	public JsonObject getConfigurationItemAsJson(String settingName) throws BatteryUnauthorisedAccessException,
+			BatteryInvalidParameterException, BatteryUnknownSettingException {
+		log.fine("Getting configuration item " + settingName);
+		return fetchConfiguration(settingName);
+	}
+
+	@Override
+	public String getConfigurationItemAsString(String settingName) throws BatteryUnauthorisedAccessException,
+			BatteryInvalidParameterException, BatteryUnknownSettingException {
+		String setting = currentConfigurationValue(settingName, false);
 		log.fine("Setting " + settingName + " (String) has value " + setting);
 		return setting;
 	}
@@ -1,13 +1,21 @@
 package graves.tim.powermanagement.server.batteries.batteryimplementations.sonnen;
 
 import java.net.URI;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLContext;
 
 import org.eclipse.microprofile.rest.client.RestClientBuilder;
 
 import graves.tim.powermanagement.common.exceptions.BatteryException;
 import graves.tim.powermanagement.server.connectionsupport.AuthException;
 import graves.tim.powermanagement.server.connectionsupport.AuthFilterSelector;
+import graves.tim.powermanagement.server.connectionsupport.BatteryConnectionPool;
+import graves.tim.powermanagement.server.connectionsupport.BatteryFaultTolerance;
+import graves.tim.powermanagement.server.connectionsupport.ConnectionCloseRequestFilter;
 import graves.tim.powermanagement.server.connectionsupport.DebugRequestBody;
+import graves.tim.powermanagement.server.connectionsupport.HandshakeCountingSSLContext;
 import io.helidon.config.Config;
 import jakarta.ws.rs.client.ClientRequestFilter;
 import lombok.extern.java.Log;
@@ -21,8 +29,15 @@ public class SonnenV2BatteryClientFactory {
 	public final static String HTTPS = "https";
 	public final static String HTTP = "http";
 	public final static String BATTERY_CONNECTION_DEBUG = "connectionDebug";
+	public final static String BATTERY_CONNECT_TIMEOUT_MILLIS = "connectTimeoutMillis";
+	public final static long BATTERY_CONNECT_TIMEOUT_MILLIS_DEFAULT = 5000;
+	public final static String BATTERY_READ_TIMEOUT_MILLIS = "readTimeoutMillis";
+	public final static long BATTERY_READ_TIMEOUT_MILLIS_DEFAULT = 10000;
+	public final static String BATTERY_CONNECTION_KEEP_ALIVE = "connectionKeepAlive";
+	public final static boolean BATTERY_CONNECTION_KEEP_ALIVE_DEFAULT = true;
 
-	public static SonnenV2 buildClient(String batteryConfigName, Config batteryConfig)
+	public static SonnenV2 buildClient(String batteryConfigName, Config batteryConfig,
+			BatteryConnectionPool connectionPool, BatteryFaultTolerance faultTolerance)
 			throws BatteryException, AuthException {
 		log.info("working on battery config " + batteryConfig.name());
 		if (!batteryConfig.get(BATTERY_HOST).exists()) {
@@ -49,12 +64,35 @@ public class SonnenV2BatteryClientFactory {
 		String batteryBaseURI = batteryConnectionType + "://" + batteryHost + ":" + batteryPort;
 		log.info("Connecting to " + batteryBaseURI);
 		ClientRequestFilter authFilter = AuthFilterSelector.getAuthFilter(batteryConfigName, batteryConfig);
+		// without timeouts a hung battery will block the calling thread forever
+		long connectTimeoutMillis = batteryConfig.get(BATTERY_CONNECT_TIMEOUT_MILLIS).asLong()
+				.orElse(BATTERY_CONNECT_TIMEOUT_MILLIS_DEFAULT);
+		long readTimeoutMillis = batteryConfig.get(BATTERY_READ_TIMEOUT_MILLIS).asLong()
+				.orElse(BATTERY_READ_TIMEOUT_MILLIS_DEFAULT);
+		boolean keepAlive = batteryConfig.get(BATTERY_CONNECTION_KEEP_ALIVE).asBoolean()
+				.orElse(BATTERY_CONNECTION_KEEP_ALIVE_DEFAULT);
+		log.info("Battery " + batteryConfigName + " connect timeout is " + connectTimeoutMillis
+				+ "ms, read timeout is " + readTimeoutMillis + "ms, keep alive is " + keepAlive);
 		RestClientBuilder builder = RestClientBuilder.newBuilder().baseUri(URI.create(batteryBaseURI))
-				.register(authFilter);
+				.connectTimeout(connectTimeoutMillis, TimeUnit.MILLISECONDS)
+				.readTimeout(readTimeoutMillis, TimeUnit.MILLISECONDS).register(authFilter);
+		if (!keepAlive) {
+			builder = builder.register(new ConnectionCloseRequestFilter());
+		}
+		if (HTTPS.equals(batteryConnectionType)) {
+			try {
+				builder = builder.sslContext(
+						new HandshakeCountingSSLContext(SSLContext.getDefault(), connectionPool::recordHandshake));
+			} catch (NoSuchAlgorithmException e) {
+				throw new BatteryException("Unable to get the default SSL context for battery " + batteryConfigName, e);
+			}
+		}
 		if (debugRequestBodies) {
 			builder = builder.register(new DebugRequestBody());
 		}
-		return builder.build(SonnenV2.class);
+		// the fault tolerance is outside the pool, so once the breaker is open calls
+		// don't even wait for a connection
+		return faultTolerance.wrap(SonnenV2.class, connectionPool.wrap(SonnenV2.class, builder.build(SonnenV2.class)));
 
 	}
 }
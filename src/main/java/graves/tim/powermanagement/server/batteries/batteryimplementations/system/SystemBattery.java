@@ -2,11 +2,13 @@ package graves.tim.powermanagement.server.batteries.batteryimplementations.syste
 
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.CompletionStage;
 
 import graves.tim.powermanagement.common.exceptions.BatteryInvalidParameterException;
 import graves.tim.powermanagement.common.exceptions.BatteryUnauthorisedAccessException;
 import graves.tim.powermanagement.common.exceptions.BatteryUnexpectedResponseException;
 import graves.tim.powermanagement.common.exceptions.BatteryUnsupportedOperationException;
+import graves.tim.powermanagement.server.batteries.BatteryCompletionStages;
 import graves.tim.powermanagement.server.batteries.GenericBattery;
 import graves.tim.powermanagement.server.batteries.manager.BatteryData;
 import jakarta.json.JsonArray;
@@ -62,6 +64,38 @@ public class SystemBattery implements GenericBattery {
 		throw new BatteryUnsupportedOperationException("System battery does not support this operation");
 	}
 
+	// these will all complete with the same unsupported operation exceptions as
+	// the normal versions
+	@Override
+	public CompletionStage<JsonObject> retrieveStatusAsync(boolean fresh) {
+		return BatteryCompletionStages.completed(this::retrieveStatus);
+	}
+
+	@Override
+	public CompletionStage<JsonObject> retrieveLatestDataAsync(boolean fresh) {
+		return BatteryCompletionStages.completed(this::retrieveLatestData);
+	}
+
+	@Override
+	public CompletionStage<JsonArray> retrievePowerMeterAsync(boolean fresh) {
+		return BatteryCompletionStages.completed(this::retrievePowerMeter);
+	}
+
+	@Override
+	public CompletionStage<Integer> retrieveCurrentChargeLevelAsync(boolean fresh) {
+		return BatteryCompletionStages.completed(this::retrieveCurrentChargeLevel);
+	}
+
+	@Override
+	public CompletionStage<Integer> retrieveBatteryReserveLevelAsync() {
+		return BatteryCompletionStages.completed(this::retrieveBatteryReserveLevel);
+	}
+
+	@Override
+	public CompletionStage<Integer> applyBatteryReserveLevelAsync(int reserveLevel) {
+		return BatteryCompletionStages.completed(() -> applyBatteryReserveLevel(reserveLevel));
+	}
+
 	@Override
 	public String setConfiguration(String settingName, String settingValue)
 			throws BatteryUnsupportedOperationException {
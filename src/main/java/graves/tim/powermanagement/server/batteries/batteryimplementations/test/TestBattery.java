@@ -5,6 +5,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletionStage;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import graves.tim.powermanagement.common.data.BatteryConfigurationSetting;
 import graves.tim.powermanagement.common.data.ChargeTimeSetting;
@@ -21,8 +24,9 @@ import graves.tim.powermanagement.common.exceptions.BatteryUnauthorisedAccessExc
 import graves.tim.powermanagement.common.exceptions.BatteryUnexpectedResponseException;
 import graves.tim.powermanagement.common.exceptions.BatteryUnknownSettingException;
 import graves.tim.powermanagement.common.exceptions.BatteryUnsupportedOperationException;
+import graves.tim.powermanagement.server.batteries.BatteryCompletionStages;
 import graves.tim.powermanagement.server.batteries.GenericBattery;
-import graves.tim.powermanagement.server.batteries.batteryimplementations.ConfigurationSettingEntry;
+import graves.tim.powermanagement.server.batteries.batteryimplementations.BatteryConfigurationSettings;
 import graves.tim.powermanagement.server.batteries.manager.BatteryData;
 import graves.tim.powermanagement.server.connectionsupport.AuthException;
 import io.helidon.config.Config;
@@ -44,6 +48,16 @@ public class TestBattery implements GenericBattery {
 	private static final int MAXIMUM_CHARGE_LEVEL = 100;
 	private final static String MINIMUM_DISHARGE_LEVEL = "EM_USOC";
 	private final static String TIME_OF_USE_SCHEDULE = "EM_ToU_Schedule";
+	private final static String CURRENT_CHARGE_LEVEL = "USOC";
+	private final static String CONSUMPTION = "Consumption_W";
+	private final static String PRODUCTION = "Production_W";
+	private final static String GRID_FEED_IN = "GridFeedIn_W";
+	private final static String BATTERY_POWER = "Pac_total_W";
+	private final static int SIMULATED_CONSUMPTION = 500; // this is for simulation purposes
+	private final static BatteryConfigurationSettings CONFIGURATION_SETTINGS = BatteryConfigurationSettings.builder()
+			.setting(BatteryConfigurationSetting.RESERVE_LEVEL, MINIMUM_DISHARGE_LEVEL, DataType.INTEGER, false)
+			.setting(BatteryConfigurationSetting.TIME_OF_USE_SCHEDULE, TIME_OF_USE_SCHEDULE, DataType.STRING, false)
+			.build();
 	private Map<String, String> savedData = new HashMap<>();
 	private int currentCharge = 100; // this is for simulation purposes
 	private int SECS_PER_CHARGE_UNIT = 10; // this is for simulation purposes
@@ -58,10 +72,12 @@ public class TestBattery implements GenericBattery {
 		ChargeTimeSetting chargeTimeSetting = ChargeTimeSetting.builder().allowCharging(true).maxExternalPower(12000)
 				.startTime(System.currentTimeMillis()).endTime(System.currentTimeMillis() + 1).build();
 		chargeTimeSettings.add(chargeTimeSetting);
-		configurationSettings.put(BatteryConfigurationSetting.RESERVE_LEVEL,
-				new ConfigurationSettingEntry(MINIMUM_DISHARGE_LEVEL, DataType.INTEGER, false));
-		configurationSettings.put(BatteryConfigurationSetting.TIME_OF_USE_SCHEDULE,
-				new ConfigurationSettingEntry(TIME_OF_USE_SCHEDULE, DataType.STRING, false));
+	}
+
+	@Override
+	@JsonIgnore
+	public BatteryConfigurationSettings getConfigurationSettings() {
+		return CONFIGURATION_SETTINGS;
 	}
 
 	@Override
@@ -87,6 +103,13 @@ public class TestBattery implements GenericBattery {
 			BatteryUnknownSettingException {
 		JsonObjectBuilder builder = Json.createObjectBuilder();
 		builder.add("SettingName", "SettingValue");
+		// simulated values so the telemetry poller has something to record
+		int chargeLevel = retrieveCurrentChargeLevel();
+		builder.add(CURRENT_CHARGE_LEVEL, chargeLevel);
+		builder.add(CONSUMPTION, SIMULATED_CONSUMPTION);
+		builder.add(PRODUCTION, 0);
+		builder.add(GRID_FEED_IN, 0);
+		builder.add(BATTERY_POWER, chargeLevel > 0 ? SIMULATED_CONSUMPTION : 0);
 		return builder.build();
 	}
 
@@ -123,6 +146,37 @@ public class TestBattery implements GenericBattery {
 		return 100 - ((int) ((System.currentTimeMillis() - startTime) / (1000 * SECS_PER_CHARGE_UNIT)));
 	}
 
+	// there's no real I/O here so just run the normal versions
+	@Override
+	public CompletionStage<JsonObject> retrieveStatusAsync(boolean fresh) {
+		return BatteryCompletionStages.completed(this::retrieveStatus);
+	}
+
+	@Override
+	public CompletionStage<JsonObject> retrieveLatestDataAsync(boolean fresh) {
+		return BatteryCompletionStages.completed(this::retrieveLatestData);
+	}
+
+	@Override
+	public CompletionStage<JsonArray> retrievePowerMeterAsync(boolean fresh) {
+		return BatteryCompletionStages.completed(this::retrievePowerMeter);
+	}
+
+	@Override
+	public CompletionStage<Integer> retrieveCurrentChargeLevelAsync(boolean fresh) {
+		return BatteryCompletionStages.completed(this::retrieveCurrentChargeLevel);
+	}
+
+	@Override
+	public CompletionStage<Integer> retrieveBatteryReserveLevelAsync() {
+		return BatteryCompletionStages.completed(this::retrieveBatteryReserveLevel);
+	}
+
+	@Override
+	public CompletionStage<Integer> applyBatteryReserveLevelAsync(int reserveLevel) {
+		return BatteryCompletionStages.completed(() -> applyBatteryReserveLevel(reserveLevel));
+	}
+
 	@Override
 	public String setConfiguration(String settingName, String settingValue) throws BatteryUnauthorisedAccessException,
 			BatteryInvalidParameterException, BatteryUnknownSettingException {
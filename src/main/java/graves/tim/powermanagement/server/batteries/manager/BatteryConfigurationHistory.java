@@ -0,0 +1,181 @@
+package graves.tim.powermanagement.server.batteries.manager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import graves.tim.powermanagement.common.data.BatteryConfigurationSetting;
+import graves.tim.powermanagement.common.data.DataItem;
+import graves.tim.powermanagement.common.data.DataItemNotFoundException;
+import graves.tim.powermanagement.server.batteries.GenericBattery;
+
+/**
+ * The previous and saved values of each configuration setting for a battery.
+ * There's an entry for every setting created up front, so the EnumMap never
+ * changes once it's been built and can be read by any thread without locking,
+ * the previous value and the saves for a setting are held in concurrent
+ * structures inside the entry.
+ *
+ * Looking up a save is just a hash lookup, the saves are only sorted when
+ * they're listed or serialized and the sorted copy is kept until the saves for
+ * that setting change, so serializing the battery data repeatedly doesn't keep
+ * copying them.
+ *
+ * Finding a value doesn't need to build a name, the listing methods return the
+ * same names as when these were held with the other battery data items (e.g.
+ * /saved/Reserve level/evening) so the REST api doesn't change
+ */
+public class BatteryConfigurationHistory {
+	private final Map<BatteryConfigurationSetting, SettingHistory> settings = new EnumMap<>(
+			BatteryConfigurationSetting.class);
+
+	public BatteryConfigurationHistory() {
+		for (BatteryConfigurationSetting setting : BatteryConfigurationSetting.values()) {
+			settings.put(setting, new SettingHistory());
+		}
+	}
+
+	// returns the value it replaced, null if there wasn't one
+	public DataItem recordPrevious(BatteryConfigurationSetting setting, DataItem previousValue) {
+		return settings.get(setting).previous.getAndSet(previousValue);
+	}
+
+	public DataItem previous(BatteryConfigurationSetting setting) throws DataItemNotFoundException {
+		DataItem previousValue = settings.get(setting).previous.get();
+		if (previousValue == null) {
+			throw new DataItemNotFoundException(
+					"Cannot locate data item " + GenericBattery.getPreviousConfigSettingName(setting.getPublicName()));
+		}
+		return previousValue;
+	}
+
+	public boolean hasPrevious(BatteryConfigurationSetting setting) {
+		return settings.get(setting).previous.get() != null;
+	}
+
+	public DataItem removePrevious(BatteryConfigurationSetting setting) {
+		return recordPrevious(setting, null);
+	}
+
+	public DataItem save(BatteryConfigurationSetting setting, String saveName, DataItem value) {
+		if (value == null) {
+			return removeSaved(setting, saveName);
+		}
+		return settings.get(setting).save(saveName, value);
+	}
+
+	public DataItem saved(BatteryConfigurationSetting setting, String saveName) throws DataItemNotFoundException {
+		DataItem savedValue = settings.get(setting).saves.get(saveName);
+		if (savedValue == null) {
+			throw new DataItemNotFoundException("Cannot locate data item "
+					+ GenericBattery.getSavedConfigSettingName(setting.getPublicName(), saveName));
+		}
+		return savedValue;
+	}
+
+	public boolean hasSaved(BatteryConfigurationSetting setting, String saveName) {
+		return settings.get(setting).saves.containsKey(saveName);
+	}
+
+	public DataItem removeSaved(BatteryConfigurationSetting setting, String saveName) {
+		return settings.get(setting).remove(saveName);
+	}
+
+	public Collection<String> listSavedNames() {
+		List<String> savedNames = new ArrayList<>();
+		for (BatteryConfigurationSetting setting : BatteryConfigurationSetting.values()) {
+			addSavedNames(setting, savedNames);
+		}
+		return savedNames;
+	}
+
+	public Collection<String> listSavedNames(BatteryConfigurationSetting setting) {
+		List<String> savedNames = new ArrayList<>();
+		addSavedNames(setting, savedNames);
+		return savedNames;
+	}
+
+	private void addSavedNames(BatteryConfigurationSetting setting, List<String> savedNames) {
+		for (String saveName : settings.get(setting).sortedSaves().keySet()) {
+			savedNames.add(GenericBattery.getSavedConfigSettingName(setting.getPublicName(), saveName));
+		}
+	}
+
+	public Collection<String> listPreviousNames() {
+		List<String> previousNames = new ArrayList<>();
+		for (BatteryConfigurationSetting setting : BatteryConfigurationSetting.values()) {
+			if (hasPrevious(setting)) {
+				previousNames.add(GenericBattery.getPreviousConfigSettingName(setting.getPublicName()));
+			}
+		}
+		return previousNames;
+	}
+
+	// these two are so the history is included when the battery data is
+	// serialized
+
+	public Map<BatteryConfigurationSetting, DataItem> getPrevious() {
+		Map<BatteryConfigurationSetting, DataItem> previousValues = new EnumMap<>(BatteryConfigurationSetting.class);
+		settings.forEach((setting, settingHistory) -> {
+			DataItem previousValue = settingHistory.previous.get();
+			if (previousValue != null) {
+				previousValues.put(setting, previousValue);
+			}
+		});
+		return Collections.unmodifiableMap(previousValues);
+	}
+
+	public Map<BatteryConfigurationSetting, Map<String, DataItem>> getSaved() {
+		Map<BatteryConfigurationSetting, Map<String, DataItem>> savedValues = new EnumMap<>(
+				BatteryConfigurationSetting.class);
+		settings.forEach((setting, settingHistory) -> {
+			if (!settingHistory.saves.isEmpty()) {
+				savedValues.put(setting, settingHistory.sortedSaves());
+			}
+		});
+		return Collections.unmodifiableMap(savedValues);
+	}
+
+	private static class SettingHistory {
+		private final AtomicReference<DataItem> previous = new AtomicReference<>();
+		private final Map<String, DataItem> saves = new ConcurrentHashMap<>();
+		// null when the saves have changed since it was last built
+		private volatile SortedMap<String, DataItem> sortedSaves;
+
+		// changes are locked so a sorted copy being built can't miss one and then
+		// be kept, saves are rare so this doesn't hold anything up
+		private synchronized DataItem save(String saveName, DataItem value) {
+			sortedSaves = null;
+			return saves.put(saveName, value);
+		}
+
+		private synchronized DataItem remove(String saveName) {
+			DataItem removed = saves.remove(saveName);
+			if (removed != null) {
+				sortedSaves = null;
+			}
+			return removed;
+		}
+
+		private SortedMap<String, DataItem> sortedSaves() {
+			SortedMap<String, DataItem> sorted = sortedSaves;
+			if (sorted == null) {
+				synchronized (this) {
+					sorted = sortedSaves;
+					if (sorted == null) {
+						sorted = Collections.unmodifiableSortedMap(new TreeMap<>(saves));
+						sortedSaves = sorted;
+					}
+				}
+			}
+			return sorted;
+		}
+	}
+}
@@ -0,0 +1,55 @@
+package graves.tim.powermanagement.server.batteries.manager;
+
+import java.util.Collection;
+
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Tag;
+
+import graves.tim.powermanagement.server.connectionsupport.BatteryConnectionPool;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import lombok.extern.java.Log;
+
+/**
+ * Publishes the state of the connection pools for the batteries that have them
+ */
+@Log
+@ApplicationScoped
+public class BatteryConnectionPoolMetrics {
+	public final static String BATTERY_TAG_NAME = "battery";
+	public final static String POOL_SIZE = "batteryConnectionPoolSize";
+	public final static String POOL_ACTIVE_CONNECTIONS = "batteryConnectionPoolActiveConnections";
+	public final static String POOL_WAITING_REQUESTS = "batteryConnectionPoolWaitingRequests";
+	public final static String POOL_ACQUIRED_CONNECTIONS = "batteryConnectionPoolAcquiredConnections";
+	public final static String POOL_REJECTED_REQUESTS = "batteryConnectionPoolRejectedRequests";
+	public final static String POOL_LAST_WAIT_MILLIS = "batteryConnectionPoolLastWaitMillis";
+	public final static String POOL_MAX_WAIT_MILLIS = "batteryConnectionPoolMaxWaitMillis";
+	public final static String POOL_AVERAGE_WAIT_MILLIS = "batteryConnectionPoolAverageWaitMillis";
+	public final static String POOL_HANDSHAKES = "batteryConnectionPoolHandshakes";
+
+	@Inject
+	private MetricRegistry metricRegistry;
+
+	public void registerBatteries(Collection<BatteryData> batteries) {
+		for (BatteryData batteryData : batteries) {
+			BatteryConnectionPool pool = batteryData.retrieveBattery().getConnectionPool();
+			if (pool == null) {
+				continue;
+			}
+			Tag batteryTag = new Tag(BATTERY_TAG_NAME, batteryData.getBatteryName());
+			metricRegistry.gauge(POOL_SIZE, pool, BatteryConnectionPool::getPoolSize, batteryTag);
+			metricRegistry.gauge(POOL_ACTIVE_CONNECTIONS, pool, BatteryConnectionPool::getActiveConnections,
+					batteryTag);
+			metricRegistry.gauge(POOL_WAITING_REQUESTS, pool, BatteryConnectionPool::getWaitingRequests, batteryTag);
+			metricRegistry.gauge(POOL_LAST_WAIT_MILLIS, pool, BatteryConnectionPool::getLastWaitMillis, batteryTag);
+			metricRegistry.gauge(POOL_MAX_WAIT_MILLIS, pool, BatteryConnectionPool::getMaxWaitMillis, batteryTag);
+			metricRegistry.gauge(POOL_AVERAGE_WAIT_MILLIS, pool, BatteryConnectionPool::getAverageWaitMillis,
+					batteryTag);
+			// the running totals are counted by the pool itself
+			pool.useCounters(metricRegistry.counter(POOL_ACQUIRED_CONNECTIONS, batteryTag),
+					metricRegistry.counter(POOL_REJECTED_REQUESTS, batteryTag),
+					metricRegistry.counter(POOL_HANDSHAKES, batteryTag));
+			log.info("Registered connection pool metrics for battery " + batteryData.getBatteryName());
+		}
+	}
+}
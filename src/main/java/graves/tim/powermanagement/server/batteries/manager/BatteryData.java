@@ -1,13 +1,15 @@
 package graves.tim.powermanagement.server.batteries.manager;
 
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.OptionalInt;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import graves.tim.powermanagement.common.data.BatteryEvent;
+import graves.tim.powermanagement.common.data.BatteryState;
 import graves.tim.powermanagement.common.data.EventDataItems;
 import graves.tim.powermanagement.common.exceptions.BatteryEventActiveChildTasksException;
 import graves.tim.powermanagement.common.exceptions.BatteryEventEventTypeRequiresSystemBattery;
@@ -16,10 +18,15 @@ import graves.tim.powermanagement.common.exceptions.BatteryEventNotYetSupportedE
 import graves.tim.powermanagement.common.exceptions.BatteryEventOutstandingChildTasksException;
 import graves.tim.powermanagement.common.exceptions.BatteryEventUnimplementedEventTypeException;
 import graves.tim.powermanagement.common.exceptions.BatteryEventUnknownEventTypeException;
+import graves.tim.powermanagement.common.exceptions.BatteryInvalidParameterException;
 import graves.tim.powermanagement.common.exceptions.BatteryNotFoundException;
+import graves.tim.powermanagement.common.exceptions.BatteryUnauthorisedAccessException;
+import graves.tim.powermanagement.common.exceptions.BatteryUnknownSettingException;
+import graves.tim.powermanagement.common.exceptions.BatteryUnsupportedOperationException;
 import graves.tim.powermanagement.server.batteries.GenericBattery;
 import graves.tim.powermanagement.server.batteries.manager.events.active.BatterySchedulableEventFactory;
 import graves.tim.powermanagement.server.batteries.manager.events.core.BatterySchedulableEvent;
+import graves.tim.powermanagement.server.batteries.manager.telemetry.BatteryTelemetryHistory;
 import lombok.AccessLevel;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
@@ -29,7 +36,7 @@ import lombok.Setter;
 import lombok.extern.java.Log;
 
 @Data
-@EqualsAndHashCode(callSuper = true)
+@EqualsAndHashCode(callSuper = true, doNotUseGetters = true)
 @Log
 @NoArgsConstructor
 public class BatteryData extends EventDataItems {
@@ -37,7 +44,27 @@ public class BatteryData extends EventDataItems {
 	@Setter(value = AccessLevel.NONE)
 	private GenericBattery battery;
 	private String batteryName;
-	private Map<Long, BatterySchedulableEvent> batterySchedulableEvents = new HashMap<>();
+	// events are added and removed from the REST api and the scheduler threads
+	private Map<Long, BatterySchedulableEvent> batterySchedulableEvents = new ConcurrentHashMap<>();
+	// the previous and saved configuration settings
+	@Setter(value = AccessLevel.NONE)
+	@EqualsAndHashCode.Exclude
+	private final BatteryConfigurationHistory configurationHistory = new BatteryConfigurationHistory();
+	// filled in by the telemetry poller, null if the battery isn't being polled
+	@Getter(value = AccessLevel.NONE)
+	@Setter(value = AccessLevel.NONE)
+	@EqualsAndHashCode.Exclude
+	private volatile BatteryTelemetryHistory telemetryHistory;
+	// running totals for the admission checks, these follow the events map
+	@JsonIgnore
+	@Getter(value = AccessLevel.NONE)
+	@Setter(value = AccessLevel.NONE)
+	@EqualsAndHashCode.Exclude
+	private final BatteryEventUsage eventUsage = new BatteryEventUsage();
+	// this is worked out each time we start, so isn't saved
+	@JsonIgnore
+	@EqualsAndHashCode.Exclude
+	private volatile BatteryState batteryState = BatteryState.INITIALISING;
 
 	public BatteryData(String batteryName, GenericBattery battery) {
 		this.batteryName = batteryName;
@@ -48,6 +75,27 @@ public class BatteryData extends EventDataItems {
 		return battery;
 	}
 
+	public BatteryTelemetryHistory retrieveTelemetryHistory() {
+		return telemetryHistory;
+	}
+
+	public void applyTelemetryHistory(BatteryTelemetryHistory telemetryHistory) {
+		this.telemetryHistory = telemetryHistory;
+	}
+
+	// use the last polled sample if it's recent enough, otherwise ask the battery
+	public int retrieveCurrentChargeLevel() throws BatteryUnauthorisedAccessException,
+			BatteryInvalidParameterException, BatteryUnknownSettingException, BatteryUnsupportedOperationException {
+		BatteryTelemetryHistory history = telemetryHistory;
+		if (history != null) {
+			OptionalInt chargeLevel = history.recentChargeLevel();
+			if (chargeLevel.isPresent()) {
+				return chargeLevel.getAsInt();
+			}
+		}
+		return battery.retrieveCurrentChargeLevel();
+	}
+
 	public BatteryEvent retrieveEvent(long eventId) {
 		return batterySchedulableEvents.get(eventId).getBatteryEvent();
 	}
@@ -58,8 +106,9 @@ public class BatteryData extends EventDataItems {
 		if (bseOld == null) {
 			return null;
 		} else {
-			bseOld.deleteEvent();
-			return batterySchedulableEvents.remove(eventId).getBatteryEvent();
+			bseOld.submitDeleteEvent();
+			unregisterEvent(eventId);
+			return bseOld.getBatteryEvent();
 		}
 	}
 
@@ -69,11 +118,29 @@ public class BatteryData extends EventDataItems {
 			BatteryEventEventTypeRequiresSystemBattery, BatteryEventEventTypeUnsupportedOnSystemBatteryException,
 			BatteryNotFoundException, BatteryEventNotYetSupportedEventTypeException {
 		BatterySchedulableEvent bse = batterySchedulableEventFactory.buildEvent(event);
-		log.info("Battery " + batteryName + " about to add BatterySchedulableEvent " + bse);
-		batterySchedulableEvents.put(event.getEventId(), bse);
+		registerEvent(bse);
 		return bse;
 	}
 
+	// for an event that's already been built (e.g. when recovering the journal)
+	public void registerEvent(BatterySchedulableEvent bse) {
+		log.info("Battery " + batteryName + " about to add BatterySchedulableEvent " + bse);
+		batterySchedulableEvents.put(bse.getBatteryEvent().getEventId(), bse);
+		eventUsage.eventAdded(bse.getBatteryEvent().getEventId(),
+				BatteryEventAdmissionController.projectedExecutionsPerMinute(bse.getBatteryEvent()));
+	}
+
+	// events must be taken out of the map through here so the usage totals follow
+	// it, this can be called for an event that's already gone
+	public void unregisterEvent(long eventId) {
+		batterySchedulableEvents.remove(eventId);
+		eventUsage.eventRemoved(eventId);
+	}
+
+	public BatteryEventUsage retrieveEventUsage() {
+		return eventUsage;
+	}
+
 	@JsonIgnore
 	public Collection<BatteryEvent> getOutstandingBatteryEvents() {
 		synchronized (this) {
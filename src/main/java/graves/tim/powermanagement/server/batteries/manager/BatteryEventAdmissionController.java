@@ -0,0 +1,132 @@
+package graves.tim.powermanagement.server.batteries.manager;
+
+import java.util.Collection;
+
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Tag;
+
+import graves.tim.powermanagement.common.data.BatteryEvent;
+import graves.tim.powermanagement.common.data.RepeatRule;
+import graves.tim.powermanagement.common.exceptions.BatteryEventAdmissionRejectedException;
+import io.helidon.config.Config;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import lombok.extern.java.Log;
+
+/**
+ * Limits how many events can be outstanding and how often they will run, both
+ * per battery and over all of the batteries, so a misbehaving client can't
+ * flood the scheduler or the batteries. The rate is projected from each events
+ * repeat rule, one off events don't count towards it.
+ *
+ * Usage comes from running totals which each battery keeps up to date as it's
+ * events are added, deleted or complete, the batteries totals are linked to
+ * the overall totals here so the check doesn't have to look at every event.
+ * The caller must make sure that checking and adding the event can't
+ * interleave with another add.
+ */
+@Log
+@ApplicationScoped
+public class BatteryEventAdmissionController {
+	public final static String ADMISSION_CONFIG_TREE_NAME = "admission";
+	public final static String MAX_OUTSTANDING_EVENTS_PER_BATTERY = "maxOutstandingEventsPerBattery";
+	public final static int MAX_OUTSTANDING_EVENTS_PER_BATTERY_DEFAULT = 100;
+	public final static String MAX_OUTSTANDING_EVENTS = "maxOutstandingEvents";
+	public final static int MAX_OUTSTANDING_EVENTS_DEFAULT = 500;
+	public final static String MAX_EXECUTIONS_PER_MINUTE_PER_BATTERY = "maxExecutionsPerMinutePerBattery";
+	public final static double MAX_EXECUTIONS_PER_MINUTE_PER_BATTERY_DEFAULT = 60;
+	public final static String MAX_EXECUTIONS_PER_MINUTE = "maxExecutionsPerMinute";
+	public final static double MAX_EXECUTIONS_PER_MINUTE_DEFAULT = 300;
+	public final static String BATTERY_TAG_NAME = "battery";
+	public final static String REASON_TAG_NAME = "reason";
+	public final static String REJECTIONS = "batteryEventAdmissionRejections";
+	public final static String OUTSTANDING_EVENTS = "batteryEventAdmissionOutstandingEvents";
+	public final static String PROJECTED_EXECUTIONS_PER_MINUTE = "batteryEventAdmissionProjectedExecutionsPerMinute";
+	public final static String REASON_BATTERY_OUTSTANDING = "batteryOutstandingEvents";
+	public final static String REASON_OUTSTANDING = "outstandingEvents";
+	public final static String REASON_BATTERY_RATE = "batteryExecutionsPerMinute";
+	public final static String REASON_RATE = "executionsPerMinute";
+	private final int maxOutstandingEventsPerBattery;
+	private final int maxOutstandingEvents;
+	private final double maxExecutionsPerMinutePerBattery;
+	private final double maxExecutionsPerMinute;
+	private final BatteryEventUsage overallUsage = new BatteryEventUsage();
+	@Inject
+	private MetricRegistry metricRegistry;
+
+	@Inject
+	public BatteryEventAdmissionController(Config config) {
+		Config admissionConfig = config.get(ADMISSION_CONFIG_TREE_NAME);
+		maxOutstandingEventsPerBattery = admissionConfig.get(MAX_OUTSTANDING_EVENTS_PER_BATTERY).asInt()
+				.orElse(MAX_OUTSTANDING_EVENTS_PER_BATTERY_DEFAULT);
+		maxOutstandingEvents = admissionConfig.get(MAX_OUTSTANDING_EVENTS).asInt()
+				.orElse(MAX_OUTSTANDING_EVENTS_DEFAULT);
+		maxExecutionsPerMinutePerBattery = admissionConfig.get(MAX_EXECUTIONS_PER_MINUTE_PER_BATTERY).asDouble()
+				.orElse(MAX_EXECUTIONS_PER_MINUTE_PER_BATTERY_DEFAULT);
+		maxExecutionsPerMinute = admissionConfig.get(MAX_EXECUTIONS_PER_MINUTE).asDouble()
+				.orElse(MAX_EXECUTIONS_PER_MINUTE_DEFAULT);
+		log.info("Event admission limits are " + maxOutstandingEventsPerBattery + " outstanding events per battery, "
+				+ maxOutstandingEvents + " in total, " + maxExecutionsPerMinutePerBattery
+				+ " executions per minute per battery, " + maxExecutionsPerMinute + " in total");
+	}
+
+	// link the batteries usage to the overall usage and publish it, called once
+	// the batteries have been setup
+	public void registerBatteries(Collection<BatteryData> batteries) {
+		for (BatteryData batteryData : batteries) {
+			BatteryEventUsage eventUsage = batteryData.retrieveEventUsage();
+			eventUsage.linkTo(overallUsage);
+			Tag batteryTag = new Tag(BATTERY_TAG_NAME, batteryData.getBatteryName());
+			metricRegistry.gauge(OUTSTANDING_EVENTS, eventUsage, BatteryEventUsage::getOutstandingEvents, batteryTag);
+			metricRegistry.gauge(PROJECTED_EXECUTIONS_PER_MINUTE, eventUsage,
+					BatteryEventUsage::getProjectedExecutionsPerMinute, batteryTag);
+		}
+		metricRegistry.gauge(OUTSTANDING_EVENTS, overallUsage, BatteryEventUsage::getOutstandingEvents);
+		metricRegistry.gauge(PROJECTED_EXECUTIONS_PER_MINUTE, overallUsage,
+				BatteryEventUsage::getProjectedExecutionsPerMinute);
+	}
+
+	public void checkAdmission(BatteryData batteryData, BatteryEvent batteryEvent)
+			throws BatteryEventAdmissionRejectedException {
+		BatteryEventUsage batteryUsage = batteryData.retrieveEventUsage();
+		int batteryOutstanding = batteryUsage.getOutstandingEvents();
+		if (batteryOutstanding >= maxOutstandingEventsPerBattery) {
+			reject(batteryData, REASON_BATTERY_OUTSTANDING,
+					"Battery " + batteryData.getBatteryName() + " already has " + batteryOutstanding
+							+ " outstanding events, the limit is " + maxOutstandingEventsPerBattery);
+		}
+		int totalOutstanding = overallUsage.getOutstandingEvents();
+		if (totalOutstanding >= maxOutstandingEvents) {
+			reject(batteryData, REASON_OUTSTANDING, "There are already " + totalOutstanding
+					+ " outstanding events over all batteries, the limit is " + maxOutstandingEvents);
+		}
+		double eventRate = projectedExecutionsPerMinute(batteryEvent);
+		if (eventRate <= 0) {
+			return;
+		}
+		double batteryRate = batteryUsage.getProjectedExecutionsPerMinute() + eventRate;
+		if (batteryRate > maxExecutionsPerMinutePerBattery) {
+			reject(batteryData, REASON_BATTERY_RATE,
+					"Adding this event would take battery " + batteryData.getBatteryName() + " to " + batteryRate
+							+ " executions per minute, the limit is " + maxExecutionsPerMinutePerBattery);
+		}
+		double totalRate = overallUsage.getProjectedExecutionsPerMinute() + eventRate;
+		if (totalRate > maxExecutionsPerMinute) {
+			reject(batteryData, REASON_RATE, "Adding this event would take all batteries to " + totalRate
+					+ " executions per minute, the limit is " + maxExecutionsPerMinute);
+		}
+	}
+
+	private void reject(BatteryData batteryData, String reason, String message)
+			throws BatteryEventAdmissionRejectedException {
+		metricRegistry.counter(REJECTIONS, new Tag(BATTERY_TAG_NAME, batteryData.getBatteryName()),
+				new Tag(REASON_TAG_NAME, reason)).inc();
+		log.warning("Rejecting event, " + message);
+		throw new BatteryEventAdmissionRejectedException(message);
+	}
+
+	static double projectedExecutionsPerMinute(BatteryEvent batteryEvent) {
+		RepeatRule repeatRule = batteryEvent.getRepeatRule();
+		return repeatRule == null ? 0 : repeatRule.projectedExecutionsPerMinute();
+	}
+}
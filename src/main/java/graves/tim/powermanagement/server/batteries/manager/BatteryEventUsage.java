@@ -0,0 +1,71 @@
+package graves.tim.powermanagement.server.batteries.manager;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Running totals of how many events a battery has outstanding and how often
+ * they are projected to run, kept up to date as the events are added and
+ * removed so the admission check doesn't have to look at every event. Once a
+ * batteries usage is linked to the overall usage any changes are passed on to
+ * that as well.
+ *
+ * The rate of each event is remembered when it's added and the same amount
+ * taken off when it's removed, repeat rules count down as the event runs so
+ * working it out again would let the totals drift. Removing an event that's
+ * already gone does nothing, the scheduler and a delete can both remove the
+ * same event.
+ */
+public class BatteryEventUsage {
+	// only the battery usages hold the events, the overall usage just has totals
+	private final Map<Long, Double> eventExecutionsPerMinute = new HashMap<>();
+	private int outstandingEvents = 0;
+	private double projectedExecutionsPerMinute = 0;
+	private BatteryEventUsage overallUsage;
+
+	public synchronized int getOutstandingEvents() {
+		return outstandingEvents;
+	}
+
+	public synchronized double getProjectedExecutionsPerMinute() {
+		return projectedExecutionsPerMinute;
+	}
+
+	public synchronized void eventAdded(long eventId, double executionsPerMinute) {
+		Double previous = eventExecutionsPerMinute.put(eventId, executionsPerMinute);
+		if (previous != null) {
+			// it's been replaced, so it's not a new event
+			update(0, executionsPerMinute - previous);
+		} else {
+			update(1, executionsPerMinute);
+		}
+	}
+
+	public synchronized void eventRemoved(long eventId) {
+		Double previous = eventExecutionsPerMinute.remove(eventId);
+		if (previous != null) {
+			update(-1, -previous);
+		}
+	}
+
+	// anything already counted here is added to the overall usage
+	public synchronized void linkTo(BatteryEventUsage overallUsage) {
+		if (this.overallUsage != null) {
+			this.overallUsage.update(-outstandingEvents, -projectedExecutionsPerMinute);
+		}
+		this.overallUsage = overallUsage;
+		overallUsage.update(outstandingEvents, projectedExecutionsPerMinute);
+	}
+
+	// the battery usage is always locked before the overall one, so this can't
+	// deadlock
+	private synchronized void update(int eventsChange, double executionsPerMinuteChange) {
+		outstandingEvents += eventsChange;
+		// once there's nothing left make sure there's no rounding error left behind
+		projectedExecutionsPerMinute = outstandingEvents == 0 ? 0
+				: projectedExecutionsPerMinute + executionsPerMinuteChange;
+		if (overallUsage != null) {
+			overallUsage.update(eventsChange, executionsPerMinuteChange);
+		}
+	}
+}
@@ -0,0 +1,62 @@
+package graves.tim.powermanagement.server.batteries.manager;
+
+import java.util.Collection;
+
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Tag;
+
+import graves.tim.powermanagement.server.connectionsupport.BatteryFaultTolerance;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import lombok.extern.java.Log;
+
+/**
+ * Publishes the circuit breaker state and bulkhead usage for each battery. The
+ * breaker state is 0 for closed, 1 for half open and 2 for open
+ */
+@Log
+@ApplicationScoped
+public class BatteryFaultToleranceMetrics {
+	public final static String BATTERY_TAG_NAME = "battery";
+	public final static String CIRCUIT_BREAKER_STATE = "batteryCircuitBreakerState";
+	public final static String BULKHEAD_CONCURRENT_EXECUTIONS = "batteryBulkheadConcurrentExecutions";
+	public final static String BULKHEAD_WAITING_QUEUE_SIZE = "batteryBulkheadWaitingQueueSize";
+	public final static String BULKHEAD_CALLS_ACCEPTED = "batteryBulkheadCallsAccepted";
+	public final static String BULKHEAD_CALLS_REJECTED = "batteryBulkheadCallsRejected";
+
+	@Inject
+	private MetricRegistry metricRegistry;
+
+	public void registerBatteries(Collection<BatteryData> batteries) {
+		for (BatteryData batteryData : batteries) {
+			BatteryFaultTolerance faultTolerance = batteryData.retrieveBattery().getFaultTolerance();
+			if (faultTolerance == null) {
+				continue;
+			}
+			Tag batteryTag = new Tag(BATTERY_TAG_NAME, batteryData.getBatteryName());
+			metricRegistry.gauge(CIRCUIT_BREAKER_STATE, faultTolerance,
+					BatteryFaultToleranceMetrics::circuitBreakerState, batteryTag);
+			metricRegistry.gauge(BULKHEAD_CONCURRENT_EXECUTIONS, faultTolerance,
+					ft -> ft.getBulkheadStats().concurrentExecutions(), batteryTag);
+			metricRegistry.gauge(BULKHEAD_WAITING_QUEUE_SIZE, faultTolerance,
+					ft -> ft.getBulkheadStats().waitingQueueSize(), batteryTag);
+			metricRegistry.gauge(BULKHEAD_CALLS_ACCEPTED, faultTolerance, ft -> ft.getBulkheadStats().callsAccepted(),
+					batteryTag);
+			metricRegistry.gauge(BULKHEAD_CALLS_REJECTED, faultTolerance, ft -> ft.getBulkheadStats().callsRejected(),
+					batteryTag);
+			log.info("Registered fault tolerance metrics for battery " + batteryData.getBatteryName());
+		}
+	}
+
+	private static int circuitBreakerState(BatteryFaultTolerance faultTolerance) {
+		switch (faultTolerance.getCircuitBreakerState()) {
+		case HALF_OPEN:
+			return 1;
+		case OPEN:
+			return 2;
+		case CLOSED:
+		default:
+			return 0;
+		}
+	}
+}
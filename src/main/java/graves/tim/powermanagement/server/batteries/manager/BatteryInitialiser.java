@@ -0,0 +1,133 @@
+package graves.tim.powermanagement.server.batteries.manager;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import graves.tim.powermanagement.common.data.BatteryState;
+import graves.tim.powermanagement.common.data.PerBatterySettings;
+import graves.tim.powermanagement.common.exceptions.BatteryException;
+import graves.tim.powermanagement.server.batteries.BatteryFactory;
+import graves.tim.powermanagement.server.batteries.GenericBattery;
+import graves.tim.powermanagement.server.connectionsupport.AuthException;
+import io.helidon.config.Config;
+import lombok.extern.java.Log;
+
+/**
+ * Gets the batteries going without holding up the server. The batteries are
+ * built in parallel, building one doesn't talk to the battery itself. Once
+ * they are built each battery is warmed up in the background, this is the
+ * first time we talk to the battery, until that finishes the battery is
+ * INITIALISING, if it fails the battery is UNREACHABLE and the warm up is
+ * tried again later.
+ */
+@Log
+public class BatteryInitialiser {
+	public final static String INITIALISATION_CONFIG_TREE_NAME = "batteryInitialisation";
+	public final static String INITIALISATION_THREADS = "threads";
+	public final static int INITIALISATION_THREADS_DEFAULT = 4;
+	public final static String WARMUP_RETRY_MILLIS = "warmupRetryMillis";
+	public final static long WARMUP_RETRY_MILLIS_DEFAULT = 30000;
+	private final int initialisationThreads;
+	private final long warmupRetryMillis;
+	private ScheduledExecutorService warmupExecutor;
+
+	public BatteryInitialiser(Config config) {
+		Config initialisationConfig = config.get(INITIALISATION_CONFIG_TREE_NAME);
+		initialisationThreads = Math.max(1, initialisationConfig.get(INITIALISATION_THREADS).asInt()
+				.orElse(INITIALISATION_THREADS_DEFAULT));
+		warmupRetryMillis = initialisationConfig.get(WARMUP_RETRY_MILLIS).asLong()
+				.orElse(WARMUP_RETRY_MILLIS_DEFAULT);
+		log.info("Battery initialisation is using " + initialisationThreads
+				+ " threads, unreachable batteries are retried every " + warmupRetryMillis + "ms");
+	}
+
+	// the batteries are returned in the same order as the config, if any can't be
+	// built the first problem is thrown, just as if they had been built one by one
+	public Map<String, GenericBattery> buildBatteries(List<Config> batteryNodes)
+			throws BatteryException, AuthException {
+		ExecutorService builders = Executors
+				.newFixedThreadPool(Math.max(1, Math.min(initialisationThreads, batteryNodes.size())));
+		try {
+			List<Future<GenericBattery>> builds = new ArrayList<>(batteryNodes.size());
+			for (Config batteryConfig : batteryNodes) {
+				log.info("Building battery " + batteryConfig.name());
+				builds.add(builders.submit(() -> BatteryFactory.build(batteryConfig.name(), batteryConfig)));
+			}
+			Map<String, GenericBattery> batteries = new LinkedHashMap<>();
+			for (int i = 0; i < batteryNodes.size(); i++) {
+				batteries.put(batteryNodes.get(i).name(), waitForBuild(batteryNodes.get(i).name(), builds.get(i)));
+			}
+			return batteries;
+		} finally {
+			builders.shutdown();
+		}
+	}
+
+	private static GenericBattery waitForBuild(String batteryName, Future<GenericBattery> build)
+			throws BatteryException, AuthException {
+		try {
+			return build.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new BatteryException("Interrupted while building battery " + batteryName, e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof BatteryException) {
+				throw (BatteryException) cause;
+			}
+			if (cause instanceof AuthException) {
+				throw (AuthException) cause;
+			}
+			throw new BatteryException("Problem building battery " + batteryName + " " + cause.getLocalizedMessage(),
+					cause);
+		}
+	}
+
+	// starts the warm up of the batteries, this returns straight away
+	public void warmup(List<BatteryData> batteries) {
+		if (batteries.isEmpty()) {
+			return;
+		}
+		warmupExecutor = Executors.newScheduledThreadPool(Math.min(initialisationThreads, batteries.size()));
+		for (BatteryData batteryData : batteries) {
+			warmupExecutor.execute(() -> warmupBattery(batteryData));
+		}
+	}
+
+	// stops any warm ups which are waiting to be retried
+	public void shutdown() {
+		if (warmupExecutor != null) {
+			warmupExecutor.shutdownNow();
+		}
+	}
+
+	private void warmupBattery(BatteryData batteryData) {
+		GenericBattery battery = batteryData.retrieveBattery();
+		try {
+			// make sure we know the max charge level for the battery if it's not already
+			// been setup
+			if (!batteryData.hasDataItem(PerBatterySettings.MAXIMUM_BATTERY_LEVEL)) {
+				int maxChargeLevel = battery.retrieveMaximumChargeLevel();
+				batteryData.addDataItem(PerBatterySettings.MAXIMUM_BATTERY_LEVEL, maxChargeLevel);
+			}
+			int chargeLevel = battery.retrieveCurrentChargeLevel(true);
+			batteryData.setBatteryState(BatteryState.READY);
+			log.info("Battery " + batteryData.getBatteryName() + " is ready, current charge level is " + chargeLevel);
+		} catch (BatteryException | RuntimeException e) {
+			batteryData.setBatteryState(BatteryState.UNREACHABLE);
+			log.warning("Battery " + batteryData.getBatteryName() + " is unreachable, will try again in "
+					+ warmupRetryMillis + "ms, problem is " + e.getLocalizedMessage());
+			if (!warmupExecutor.isShutdown()) {
+				warmupExecutor.schedule(() -> warmupBattery(batteryData), warmupRetryMillis, TimeUnit.MILLISECONDS);
+			}
+		}
+	}
+}
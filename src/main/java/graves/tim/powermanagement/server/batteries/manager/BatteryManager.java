@@ -1,12 +1,15 @@
 package graves.tim.powermanagement.server.batteries.manager;
 
 import java.io.File;
+import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -14,8 +17,10 @@ import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 
 import graves.tim.powermanagement.common.data.BatteryEvent;
-import graves.tim.powermanagement.common.data.PerBatterySettings;
+import graves.tim.powermanagement.common.data.BatteryState;
+import graves.tim.powermanagement.common.data.RepeatRule;
 import graves.tim.powermanagement.common.exceptions.BatteryEventActiveChildTasksException;
+import graves.tim.powermanagement.common.exceptions.BatteryEventAdmissionRejectedException;
 import graves.tim.powermanagement.common.exceptions.BatteryEventEventInProgressException;
 import graves.tim.powermanagement.common.exceptions.BatteryEventEventTypeRequiresSystemBattery;
 import graves.tim.powermanagement.common.exceptions.BatteryEventEventTypeUnsupportedOnSystemBatteryException;
@@ -36,16 +41,21 @@ import graves.tim.powermanagement.common.exceptions.BatteryStateException;
 import graves.tim.powermanagement.common.exceptions.BatteryUnauthorisedAccessException;
 import graves.tim.powermanagement.common.exceptions.BatteryUnknownSettingException;
 import graves.tim.powermanagement.common.exceptions.BatteryUnsupportedOperationException;
-import graves.tim.powermanagement.server.batteries.BatteryFactory;
 import graves.tim.powermanagement.server.batteries.GenericBattery;
 import graves.tim.powermanagement.server.batteries.batteryimplementations.system.SystemBattery;
 import graves.tim.powermanagement.server.batteries.manager.events.BatteryIndividualSchedulableEventScheduler;
 import graves.tim.powermanagement.server.batteries.manager.events.active.BatterySchedulableEventFactory;
 import graves.tim.powermanagement.server.batteries.manager.events.core.BatterySchedulableEvent;
+import graves.tim.powermanagement.server.batteries.manager.journal.BatteryEventJournal;
+import graves.tim.powermanagement.server.batteries.manager.journal.BatteryEventJournalRecord;
+import graves.tim.powermanagement.server.batteries.manager.telemetry.BatteryTelemetryPoller;
 import graves.tim.powermanagement.server.connectionsupport.AuthException;
 import io.helidon.config.Config;
 import io.helidon.config.ConfigValue;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.context.Initialized;
+import jakarta.enterprise.event.Observes;
 import jakarta.inject.Inject;
 import lombok.NonNull;
 import lombok.extern.java.Log;
@@ -59,6 +69,14 @@ public class BatteryManager {
 	private final static DateTimeFormatter dtf = DateTimeFormatter.ISO_DATE_TIME;
 	public final static String BATTERY_CONFIG_TREE_NAME = "battery";
 	private Map<String, BatteryData> batteries = new TreeMap<>();
+	// event id's need to be unique across restarts as the journal uses them, so
+	// this starts after the highest id recovered from the journal
+	private final AtomicLong eventIdCounter = new AtomicLong(0);
+	private final ReentrantLock admissionLock = new ReentrantLock();
+	// kept so the warm up can be started once the metrics are registered, and so
+	// any outstanding warm up retries can be stopped on shutdown
+	private BatteryInitialiser batteryInitialiser;
+	private List<BatteryData> warmupBatteries;
 
 	@Inject
 	private BatterySchedulableEventFactory batterySchedulableEventFactory;
@@ -66,6 +84,24 @@ public class BatteryManager {
 	@Inject
 	private BatteryIndividualSchedulableEventScheduler batteryIndividualSchedulableEventScheduler;
 
+	@Inject
+	private BatteryEventJournal batteryEventJournal;
+
+	@Inject
+	private BatteryEventAdmissionController batteryEventAdmissionController;
+
+	@Inject
+	private BatteryTelemetryCacheMetrics batteryTelemetryCacheMetrics;
+
+	@Inject
+	private BatteryConnectionPoolMetrics batteryConnectionPoolMetrics;
+
+	@Inject
+	private BatteryFaultToleranceMetrics batteryFaultToleranceMetrics;
+
+	@Inject
+	private BatteryTelemetryPoller batteryTelemetryPoller;
+
 	// private Config config;
 	@Inject
 	public BatteryManager(Config config) throws BatteryException, AuthException {
@@ -83,29 +119,111 @@ public class BatteryManager {
 						"No provided sub nodes of config " + BATTERY_CONFIG_TREE_NAME + " cannot load batteries");
 			}
 			for (Config batteryConfig : batteryNodes) {
-				String batteryConfigName = batteryConfig.name();
-				if (isSystemBattery(batteryConfigName)) {
+				if (isSystemBattery(batteryConfig.name())) {
 					throw new BatteryException("Batteries cannot be named System as this is a reserved name");
 				}
-				log.info("Building battery " + batteryConfigName);
-				GenericBattery battery = BatteryFactory.build(batteryConfigName, batteryConfig);
-				BatteryData batteryData = new BatteryData(batteryConfigName, battery);
+			}
+			// building the batteries doesn't talk to them, that happens in the warm up so
+			// an unreachable battery doesn't stop us starting
+			batteryInitialiser = new BatteryInitialiser(config);
+			Map<String, GenericBattery> builtBatteries = batteryInitialiser.buildBatteries(batteryNodes);
+			warmupBatteries = new ArrayList<>(builtBatteries.size());
+			for (Map.Entry<String, GenericBattery> builtBattery : builtBatteries.entrySet()) {
+				GenericBattery battery = builtBattery.getValue();
+				BatteryData batteryData = new BatteryData(builtBattery.getKey(), battery);
 				battery.setBatteryData(batteryData);
-				batteries.put(batteryConfigName, batteryData);
-				// make sure we know the max charge level for the battery if it's not already
-				// been setup
-				if (!batteryData.hasDataItem(PerBatterySettings.MAXIMUM_BATTERY_LEVEL)) {
-					int maxChargeLevel = battery.retrieveMaximumChargeLevel();
-					batteryData.addDataItem(PerBatterySettings.MAXIMUM_BATTERY_LEVEL, maxChargeLevel);
-				}
+				batteries.put(builtBattery.getKey(), batteryData);
+				warmupBatteries.add(batteryData);
 			}
-			batteries.put(BATTERY_TYPE_SYSTEM, new BatteryData(BATTERY_TYPE_SYSTEM, new SystemBattery()));
+			BatteryData systemBatteryData = new BatteryData(BATTERY_TYPE_SYSTEM, new SystemBattery());
+			systemBatteryData.setBatteryState(BatteryState.READY);
+			batteries.put(BATTERY_TYPE_SYSTEM, systemBatteryData);
 		} else {
 			throw new BatteryException("Config node " + BATTERY_CONFIG_TREE_NAME
 					+ " exists, but is not reporting present when retrieveing subnodes");
 		}
 	}
 
+	// runs once the application has started, this also ensures that we get
+	// created at startup so the recovered events run when they should. The
+	// batteries count their telemetry cache and connection pool use into the
+	// metrics counters, so those are registered before the warm up first talks to
+	// the batteries
+	private void recoverOnStartup(@Observes @Initialized(ApplicationScoped.class) Object init) {
+		batteryTelemetryCacheMetrics.registerBatteries(batteries.values());
+		batteryConnectionPoolMetrics.registerBatteries(batteries.values());
+		batteryFaultToleranceMetrics.registerBatteries(batteries.values());
+		batteryInitialiser.warmup(warmupBatteries);
+		recoverJournaledEvents();
+		batteryEventAdmissionController.registerBatteries(batteries.values());
+		batteryTelemetryPoller.start(batteries.values());
+	}
+
+	@PreDestroy
+	private void shutdown() {
+		if (batteryInitialiser != null) {
+			batteryInitialiser.shutdown();
+		}
+	}
+
+	// replay the journal and re-schedule everything that was live when we
+	// stopped, events which are now in the past are handled according to their
+	// processOldEvent setting. This is done in bulk, all of the events are built
+	// in one pass, then registered and journaled, then scheduled
+	private void recoverJournaledEvents() {
+		if (!batteryEventJournal.isEnabled()) {
+			return;
+		}
+		Collection<BatteryEventJournalRecord> journalRecords = batteryEventJournal.replay();
+		ZonedDateTime now = ZonedDateTime.now();
+		List<BatterySchedulableEvent> recoveredEvents = new ArrayList<>(journalRecords.size());
+		for (BatteryEventJournalRecord journalRecord : journalRecords) {
+			BatteryEvent batteryEvent = journalRecord.getBatteryEvent();
+			eventIdCounter.accumulateAndGet(batteryEvent.getEventId() + 1, Math::max);
+			if (!batteryEvent.isProcessOldEvent() && batteryEvent.getPlannedStartTime().isBefore(now)) {
+				// we don't process old events, so drop the missed runs and roll forward to
+				// the next one that's in the future, if there is one
+				RepeatRule repeatRule = batteryEvent.getRepeatRule();
+				ZonedDateTime nextPlannedStartTime = repeatRule == null ? null
+						: repeatRule.calculateNextRepeat(batteryEvent.getPlannedStartTime());
+				if (nextPlannedStartTime == null) {
+					log.info("Dropping journaled event " + batteryEvent
+							+ " as it's start time has passed and it has no future repeats");
+					continue;
+				}
+				batteryEvent.applyPlannedStartTime(nextPlannedStartTime);
+			}
+			try {
+				recoveredEvents.add(batterySchedulableEventFactory.buildEvent(batteryEvent));
+			} catch (BatteryException e) {
+				log.warning("Unable to recover journaled event " + batteryEvent + " because "
+						+ e.getLocalizedMessage());
+			}
+		}
+		// replay reset the journals live set so the events need to be journaled again
+		for (BatterySchedulableEvent bse : recoveredEvents) {
+			bse.getBatteryData().registerEvent(bse);
+			batteryEventJournal.recordAdd(bse.getBatteryData().getBatteryName(), bse.getBatteryEvent());
+		}
+		int recovered = 0;
+		for (BatterySchedulableEvent bse : recoveredEvents) {
+			try {
+				scheduleEvent(bse.getBatteryData().getBatteryName(), bse.getBatteryData(), bse);
+				recovered++;
+			} catch (BatteryEventInPastException e) {
+				log.warning("Unable to recover journaled event " + bse.getBatteryEvent() + " because "
+						+ e.getLocalizedMessage());
+			}
+		}
+		log.info("Recovered " + recovered + " of " + journalRecords.size() + " journaled events");
+		// the journal now has the old records plus the re-adds, tidy it up
+		batteryEventJournal.compact();
+	}
+
+	public long nextEventId() {
+		return eventIdCounter.getAndIncrement();
+	}
+
 	public boolean isSystemBattery(String batteryName) {
 		return BATTERY_TYPE_SYSTEM.equalsIgnoreCase(batteryName);
 	}
@@ -159,28 +277,64 @@ public class BatteryManager {
 			throw new BatteryEventIsSystemEventException(
 					"This is a system event, unable to delete it unless you set deleteSystemEvent to true");
 		}
-		// try to get the event to delete, it may well object if there are active tasks
-		// running or child tasks
-		batterySchedulableEvent.deleteEvent();
-		return batteryData.getBatterySchedulableEvents().remove(eventId).getBatteryEvent();
+		// hand the delete to the event, this fails straight away if a child task is
+		// running, otherwise it's done in the events mailbox after anything already
+		// queued there
+		batterySchedulableEvent.submitDeleteEvent();
+		// the scheduler may have removed it if it's last child task has just finished
+		batteryData.unregisterEvent(eventId);
+		batteryEventJournal.recordDelete(batteryName, eventId);
+		return batterySchedulableEvent.getBatteryEvent();
 	}
 
 	public BatteryEvent addEvent(String batteryName, BatteryEvent batteryEvent) throws BatteryNotFoundException,
 			BatteryEventUnknownEventTypeException, BatteryEventUnimplementedEventTypeException,
 			BatteryEventEventTypeRequiresSystemBattery, BatteryEventEventTypeUnsupportedOnSystemBatteryException,
-			BatteryEventNotYetSupportedEventTypeException, BatteryEventInPastException {
+			BatteryEventNotYetSupportedEventTypeException, BatteryEventInPastException,
+			BatteryEventAdmissionRejectedException {
 		BatteryData batteryData = getBatteryDataByName(batteryName);
-		BatterySchedulableEvent bse = batteryData.addEvent(batterySchedulableEventFactory, batteryEvent);
-		// the event has been setup, but it needs to be scheduled
-		bse.schedule(batteryIndividualSchedulableEventScheduler);
+		BatterySchedulableEvent bse;
+		// the check and the add have to happen together or two requests could both
+		// squeeze in under the limit, this is only held while the maps are updated
+		admissionLock.lock();
+		try {
+			batteryEventAdmissionController.checkAdmission(batteryData, batteryEvent);
+			bse = batteryData.addEvent(batterySchedulableEventFactory, batteryEvent);
+		} finally {
+			admissionLock.unlock();
+		}
+		// journal it before it's scheduled, once it's scheduled it could run (and
+		// be rescheduled or completed) straight away and those records must come
+		// after the add
+		batteryEventJournal.recordAdd(batteryName, batteryEvent);
+		scheduleEvent(batteryName, batteryData, bse);
 		return bse.getBatteryEvent();
 	}
 
+	// the event has been setup and journaled, but it needs to be scheduled
+	private void scheduleEvent(String batteryName, BatteryData batteryData, BatterySchedulableEvent bse)
+			throws BatteryEventInPastException {
+		try {
+			bse.schedule(batteryIndividualSchedulableEventScheduler);
+		} catch (BatteryEventInPastException e) {
+			// don't let an event that never got going count against the limits or come
+			// back after a restart
+			long eventId = bse.getBatteryEvent().getEventId();
+			batteryData.unregisterEvent(eventId);
+			batteryEventJournal.recordDelete(batteryName, eventId);
+			throw e;
+		}
+	}
+
 	public int getBatteryCurrentChargeLevel(String batteryName)
 			throws BatteryNotFoundException, BatteryUnauthorisedAccessException, BatteryUnknownSettingException,
 			BatteryInvalidParameterException, BatteryUnsupportedOperationException {
 		BatteryData batteryData = getBatteryDataByName(batteryName);
-		return batteryData.retrieveBattery().retrieveCurrentChargeLevel();
+		return batteryData.retrieveCurrentChargeLevel();
+	}
+
+	public BatteryState getBatteryState(String batteryName) throws BatteryNotFoundException {
+		return getBatteryDataByName(batteryName).getBatteryState();
 	}
 
 	public int getBatteryReserveChargeLevel(String batteryName)
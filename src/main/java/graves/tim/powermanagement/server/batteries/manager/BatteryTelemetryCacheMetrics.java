@@ -0,0 +1,46 @@
+package graves.tim.powermanagement.server.batteries.manager;
+
+import java.util.Collection;
+
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Tag;
+
+import graves.tim.powermanagement.server.batteries.batteryimplementations.BatteryTelemetryCache;
+import graves.tim.powermanagement.server.batteries.batteryimplementations.BatteryTelemetryType;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import lombok.extern.java.Log;
+
+/**
+ * Publishes the hit and miss counts for the batteries that cache their
+ * telemetry, the counters are handed to the cache which counts into them
+ */
+@Log
+@ApplicationScoped
+public class BatteryTelemetryCacheMetrics {
+	public final static String BATTERY_TAG_NAME = "battery";
+	public final static String TELEMETRY_TAG_NAME = "telemetry";
+	public final static String CACHE_HITS = "batteryTelemetryCacheHits";
+	public final static String CACHE_MISSES = "batteryTelemetryCacheMisses";
+	public final static String CACHE_STALE_HITS = "batteryTelemetryCacheStaleHits";
+
+	@Inject
+	private MetricRegistry metricRegistry;
+
+	public void registerBatteries(Collection<BatteryData> batteries) {
+		for (BatteryData batteryData : batteries) {
+			BatteryTelemetryCache telemetryCache = batteryData.retrieveBattery().getTelemetryCache();
+			if (telemetryCache == null) {
+				continue;
+			}
+			Tag batteryTag = new Tag(BATTERY_TAG_NAME, batteryData.getBatteryName());
+			for (BatteryTelemetryType telemetryType : BatteryTelemetryType.values()) {
+				Tag telemetryTag = new Tag(TELEMETRY_TAG_NAME, telemetryType.name());
+				telemetryCache.useCounters(telemetryType, metricRegistry.counter(CACHE_HITS, batteryTag, telemetryTag),
+						metricRegistry.counter(CACHE_MISSES, batteryTag, telemetryTag),
+						metricRegistry.counter(CACHE_STALE_HITS, batteryTag, telemetryTag));
+			}
+			log.info("Registered telemetry cache metrics for battery " + batteryData.getBatteryName());
+		}
+	}
+}
@@ -0,0 +1,24 @@
+package graves.tim.powermanagement.server.batteries.manager.events;
+
+/**
+ * How the scheduler runs the body of an event once it's timer has fired
+ *
+ * LANES - each battery has a serial lane, the lanes share a bounded pool of
+ * worker threads
+ *
+ * THREAD_PER_EVENT - each event body gets it's own thread (a virtual thread if
+ * the JVM supports them), so blocking I/O on one event does not hold up any
+ * other
+ */
+public enum BatteryEventExecutionMode {
+	LANES, THREAD_PER_EVENT;
+
+	public static BatteryEventExecutionMode getByName(String executionModeName) {
+		for (BatteryEventExecutionMode executionMode : BatteryEventExecutionMode.values()) {
+			if (executionMode.name().equalsIgnoreCase(executionModeName)) {
+				return executionMode;
+			}
+		}
+		return null;
+	}
+}
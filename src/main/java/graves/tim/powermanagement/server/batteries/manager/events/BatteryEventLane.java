@@ -0,0 +1,127 @@
+package graves.tim.powermanagement.server.batteries.manager.events;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.Getter;
+import lombok.extern.java.Log;
+
+/**
+ * A serial execution lane for a single battery. Tasks submitted to the lane run
+ * one at a time in the order they were submitted, but the lane does not own a
+ * thread, when it has work it borrows one from the shared worker pool. This
+ * means that a slow battery only holds up it's own events and the other
+ * batteries carry on using the remaining workers.
+ */
+@Log
+public class BatteryEventLane implements Executor {
+	// how many tasks to run before handing the worker back to the pool, this stops
+	// a very busy battery starving the others of workers
+	public final static int MAX_TASKS_PER_DRAIN = 16;
+	@Getter
+	private final String batteryName;
+	private final Executor workerPool;
+	private final Queue<LaneTask> tasks = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean draining = new AtomicBoolean(false);
+	private final AtomicInteger queueDepth = new AtomicInteger(0);
+	private final AtomicLong executedTasks = new AtomicLong(0);
+	private final AtomicLong lastWaitMillis = new AtomicLong(0);
+	private final AtomicLong maxWaitMillis = new AtomicLong(0);
+	private final AtomicLong totalWaitMillis = new AtomicLong(0);
+
+	public BatteryEventLane(String batteryName, Executor workerPool) {
+		this.batteryName = batteryName;
+		this.workerPool = workerPool;
+	}
+
+	@Override
+	public void execute(Runnable task) {
+		tasks.add(new LaneTask(task, System.nanoTime()));
+		queueDepth.incrementAndGet();
+		scheduleDrain();
+	}
+
+	public int getQueueDepth() {
+		return queueDepth.get();
+	}
+
+	public long getExecutedTasks() {
+		return executedTasks.get();
+	}
+
+	public long getLastWaitMillis() {
+		return lastWaitMillis.get();
+	}
+
+	public long getMaxWaitMillis() {
+		return maxWaitMillis.get();
+	}
+
+	public long getAverageWaitMillis() {
+		long executed = executedTasks.get();
+		return executed == 0 ? 0 : totalWaitMillis.get() / executed;
+	}
+
+	private void scheduleDrain() {
+		// only one worker can be draining the lane at a time, that's what keeps the
+		// tasks for a battery in order
+		if (draining.compareAndSet(false, true)) {
+			try {
+				workerPool.execute(this::drain);
+			} catch (RejectedExecutionException e) {
+				draining.set(false);
+				log.severe("Worker pool rejected the event lane for battery " + batteryName + " because "
+						+ e.getLocalizedMessage());
+				throw e;
+			}
+		}
+	}
+
+	private void drain() {
+		int processed = 0;
+		LaneTask task;
+		while ((processed < MAX_TASKS_PER_DRAIN) && ((task = tasks.poll()) != null)) {
+			queueDepth.decrementAndGet();
+			recordWait(task);
+			try {
+				task.getTask().run();
+			} catch (RuntimeException e) {
+				log.warning("Problem running task in event lane for battery " + batteryName + " problem is "
+						+ e.getLocalizedMessage());
+				e.printStackTrace();
+			}
+			executedTasks.incrementAndGet();
+			processed++;
+		}
+		draining.set(false);
+		// something may have been added between the last poll and clearing the flag,
+		// or we may have hit the drain limit, if so go round again
+		if (!tasks.isEmpty()) {
+			scheduleDrain();
+		}
+	}
+
+	private void recordWait(LaneTask task) {
+		long waitMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - task.getSubmittedNanos());
+		lastWaitMillis.set(waitMillis);
+		totalWaitMillis.addAndGet(waitMillis);
+		maxWaitMillis.accumulateAndGet(waitMillis, Math::max);
+	}
+
+	@Getter
+	private static class LaneTask {
+		private final Runnable task;
+		private final long submittedNanos;
+
+		private LaneTask(Runnable task, long submittedNanos) {
+			this.task = task;
+			this.submittedNanos = submittedNanos;
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package graves.tim.powermanagement.server.batteries.manager.events;
+
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricUnits;
+import org.eclipse.microprofile.metrics.Tag;
+
+import graves.tim.powermanagement.server.batteries.manager.events.core.BatteryIndividualSchedulableEvent;
+import graves.tim.powermanagement.server.batteries.manager.events.timers.BatteryEventTimer;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import lombok.extern.java.Log;
+
+/**
+ * Publishes the scheduler's internal state through the MicroProfile metrics
+ * endpoint (/metrics)
+ */
+@Log
+@ApplicationScoped
+public class BatteryEventSchedulerMetrics {
+	public final static String BATTERY_TAG_NAME = "battery";
+	public final static String EVENT_TYPE_TAG_NAME = "eventType";
+	public final static String LANE_QUEUE_DEPTH = "batteryEventLaneQueueDepth";
+	public final static String LANE_EXECUTED_TASKS = "batteryEventLaneExecutedTasks";
+	public final static String LANE_LAST_WAIT_MILLIS = "batteryEventLaneLastWaitMillis";
+	public final static String LANE_MAX_WAIT_MILLIS = "batteryEventLaneMaxWaitMillis";
+	public final static String LANE_AVERAGE_WAIT_MILLIS = "batteryEventLaneAverageWaitMillis";
+	public final static String TIMER_PENDING_TASKS = "batteryEventTimerPendingTasks";
+	public final static String EVENT_QUEUEING_DELAY = "batteryEventQueueingDelay";
+	public final static String EVENT_SCHEDULED_LATENESS = "batteryEventScheduledStartLateness";
+	public final static String EVENT_PLANNED_LATENESS = "batteryEventPlannedStartLateness";
+	public final static String EVENT_EXECUTION_DURATION = "batteryEventExecutionDuration";
+	private final static Metadata EVENT_QUEUEING_DELAY_METADATA = millisecondMetadata(EVENT_QUEUEING_DELAY,
+			"Time between an event being due and a thread starting to run it");
+	private final static Metadata EVENT_SCHEDULED_LATENESS_METADATA = millisecondMetadata(EVENT_SCHEDULED_LATENESS,
+			"How long after it's scheduled activation time an event started, negative if it was early");
+	private final static Metadata EVENT_PLANNED_LATENESS_METADATA = millisecondMetadata(EVENT_PLANNED_LATENESS,
+			"How long after it's planned activation time an event started");
+	private final static Metadata EVENT_EXECUTION_DURATION_METADATA = millisecondMetadata(EVENT_EXECUTION_DURATION,
+			"How long the processing of an event took");
+
+	@Inject
+	private MetricRegistry metricRegistry;
+
+	public void registerLane(BatteryEventLane lane) {
+		Tag batteryTag = new Tag(BATTERY_TAG_NAME, lane.getBatteryName());
+		metricRegistry.gauge(LANE_QUEUE_DEPTH, lane, BatteryEventLane::getQueueDepth, batteryTag);
+		metricRegistry.gauge(LANE_EXECUTED_TASKS, lane, BatteryEventLane::getExecutedTasks, batteryTag);
+		metricRegistry.gauge(LANE_LAST_WAIT_MILLIS, lane, BatteryEventLane::getLastWaitMillis, batteryTag);
+		metricRegistry.gauge(LANE_MAX_WAIT_MILLIS, lane, BatteryEventLane::getMaxWaitMillis, batteryTag);
+		metricRegistry.gauge(LANE_AVERAGE_WAIT_MILLIS, lane, BatteryEventLane::getAverageWaitMillis, batteryTag);
+		log.info("Registered event lane metrics for battery " + lane.getBatteryName());
+	}
+
+	public void registerTimer(BatteryEventTimer timer) {
+		metricRegistry.gauge(TIMER_PENDING_TASKS, timer, BatteryEventTimer::getPendingTasks);
+	}
+
+	// the histograms are per battery and event type so a slow battery or a slow
+	// type of event stands out
+	public void recordEventTimings(BatteryIndividualSchedulableEvent batteryIndividualSchedulableEvent,
+			long queueingDelayMillis, long scheduledLatenessMillis, long plannedLatenessMillis,
+			long executionDurationMillis) {
+		Tag batteryTag = new Tag(BATTERY_TAG_NAME, batteryIndividualSchedulableEvent.getBatteryData().getBatteryName());
+		Tag eventTypeTag = new Tag(EVENT_TYPE_TAG_NAME,
+				String.valueOf(batteryIndividualSchedulableEvent.getBatteryIndividualSchedulableEventType()));
+		metricRegistry.histogram(EVENT_QUEUEING_DELAY_METADATA, batteryTag, eventTypeTag).update(queueingDelayMillis);
+		metricRegistry.histogram(EVENT_SCHEDULED_LATENESS_METADATA, batteryTag, eventTypeTag)
+				.update(scheduledLatenessMillis);
+		metricRegistry.histogram(EVENT_PLANNED_LATENESS_METADATA, batteryTag, eventTypeTag)
+				.update(plannedLatenessMillis);
+		metricRegistry.histogram(EVENT_EXECUTION_DURATION_METADATA, batteryTag, eventTypeTag)
+				.update(executionDurationMillis);
+	}
+
+	private static Metadata millisecondMetadata(String name, String description) {
+		return Metadata.builder().withName(name).withDescription(description).withUnit(MetricUnits.MILLISECONDS)
+				.build();
+	}
+}
@@ -1,16 +1,34 @@
 package graves.tim.powermanagement.server.batteries.manager.events;
 
+import java.lang.reflect.Method;
+import java.time.Duration;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 import graves.tim.powermanagement.common.exceptions.BatteryEventActiveChildTasksException;
 import graves.tim.powermanagement.common.exceptions.BatteryEventInPastException;
 import graves.tim.powermanagement.common.exceptions.BatteryEventOutstandingChildTasksException;
+import graves.tim.powermanagement.server.batteries.manager.BatteryData;
 import graves.tim.powermanagement.server.batteries.manager.BatteryManager;
 import graves.tim.powermanagement.server.batteries.manager.events.core.BatteryIndividualSchedulableEvent;
+import graves.tim.powermanagement.server.batteries.manager.events.core.BatterySchedulableEvent;
+import graves.tim.powermanagement.server.batteries.manager.events.timers.BatteryEventTimer;
+import graves.tim.powermanagement.server.batteries.manager.events.timers.BatteryEventTimerType;
+import graves.tim.powermanagement.server.batteries.manager.events.timers.ExecutorBatteryEventTimer;
+import graves.tim.powermanagement.server.batteries.manager.events.timers.HierarchicalTimingWheel;
+import graves.tim.powermanagement.server.batteries.manager.events.timers.ScheduledEventHandle;
+import graves.tim.powermanagement.server.batteries.manager.journal.BatteryEventJournal;
+import io.helidon.config.Config;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import lombok.extern.java.Log;
@@ -19,9 +37,124 @@ import lombok.extern.java.Log;
 @ApplicationScoped
 public class BatteryIndividualSchedulableEventScheduler {
 	public final static int MINIMUM_SECONDS_BEFORE_RUNNING = 1;
-	private ScheduledExecutorService executor = Executors.newScheduledThreadPool(1);
+	public final static String SCHEDULER_CONFIG_TREE_NAME = "scheduler";
+	public final static String SCHEDULER_WORKER_THREADS = "workerThreads";
+	public final static int SCHEDULER_WORKER_THREADS_DEFAULT = 4;
+	public final static String SCHEDULER_EXECUTION_MODE = "executionMode";
+	public final static BatteryEventExecutionMode SCHEDULER_EXECUTION_MODE_DEFAULT = BatteryEventExecutionMode.LANES;
+	public final static String SCHEDULER_TIMER = "timer";
+	public final static BatteryEventTimerType SCHEDULER_TIMER_DEFAULT = BatteryEventTimerType.TIMING_WHEEL;
+	public final static String SCHEDULER_TIMING_WHEEL_TICK_MILLIS = "timingWheelTickMillis";
+	public final static long SCHEDULER_TIMING_WHEEL_TICK_MILLIS_DEFAULT = 10;
+	public final static String SCHEDULER_DRIFT_COMPENSATION = "driftCompensation";
+	public final static boolean SCHEDULER_DRIFT_COMPENSATION_DEFAULT = true;
+	public final static String SCHEDULER_MAX_DRIFT_COMPENSATION_MILLIS = "maxDriftCompensationMillis";
+	public final static long SCHEDULER_MAX_DRIFT_COMPENSATION_MILLIS_DEFAULT = 1000;
+	public final static String SCHEDULER_COALESCING_WINDOW_MILLIS = "coalescingWindowMillis";
+	public final static long SCHEDULER_COALESCING_WINDOW_MILLIS_DEFAULT = 0;
+	// the timer only works out when things are due, the actual event processing
+	// happens either in the per battery lanes which share the worker pool, or on a
+	// thread per event depending on the execution mode
+	private BatteryEventTimer timer;
+	private BatteryEventExecutionMode executionMode;
+	private boolean driftCompensation;
+	// lateness bigger than this is not timer drift (the system was suspended, an
+	// old event is being caught up on etc.) so we don't try and correct for it
+	private long maxDriftCompensationNanos;
+	private ExecutorService workerPool;
+	private ExecutorService eventThreadExecutor;
+	private Map<String, BatteryEventLane> lanes = new ConcurrentHashMap<>();
+	// events which write to the same setting on a battery are held here for the
+	// coalescing window once they are due, 0 disables this
+	private long coalescingWindowMillis;
+	private Map<String, List<BatteryIndividualSchedulableEvent>> coalescingEvents = new ConcurrentHashMap<>();
 	@Inject
 	private BatteryManager batteryManager;
+	@Inject
+	private BatteryEventSchedulerMetrics batteryEventSchedulerMetrics;
+	@Inject
+	private BatteryEventJournal batteryEventJournal;
+
+	@Inject
+	public BatteryIndividualSchedulableEventScheduler(Config config) {
+		Config schedulerConfig = config.get(SCHEDULER_CONFIG_TREE_NAME);
+		String timerTypeName = schedulerConfig.get(SCHEDULER_TIMER).asString().orElse(SCHEDULER_TIMER_DEFAULT.name());
+		BatteryEventTimerType timerType = BatteryEventTimerType.getByName(timerTypeName);
+		if (timerType == null) {
+			log.warning("Unknown scheduler timer " + timerTypeName + ", using " + SCHEDULER_TIMER_DEFAULT);
+			timerType = SCHEDULER_TIMER_DEFAULT;
+		}
+		switch (timerType) {
+		case EXECUTOR:
+			timer = new ExecutorBatteryEventTimer();
+			break;
+		case TIMING_WHEEL:
+		default:
+			timer = new HierarchicalTimingWheel(schedulerConfig.get(SCHEDULER_TIMING_WHEEL_TICK_MILLIS).asLong()
+					.orElse(SCHEDULER_TIMING_WHEEL_TICK_MILLIS_DEFAULT));
+			break;
+		}
+		driftCompensation = schedulerConfig.get(SCHEDULER_DRIFT_COMPENSATION).asBoolean()
+				.orElse(SCHEDULER_DRIFT_COMPENSATION_DEFAULT);
+		maxDriftCompensationNanos = TimeUnit.MILLISECONDS.toNanos(schedulerConfig
+				.get(SCHEDULER_MAX_DRIFT_COMPENSATION_MILLIS).asLong().orElse(SCHEDULER_MAX_DRIFT_COMPENSATION_MILLIS_DEFAULT));
+		coalescingWindowMillis = schedulerConfig.get(SCHEDULER_COALESCING_WINDOW_MILLIS).asLong()
+				.orElse(SCHEDULER_COALESCING_WINDOW_MILLIS_DEFAULT);
+		if (coalescingWindowMillis > 0) {
+			log.info("Scheduler will coalesce writes to the same battery setting which are due within "
+					+ coalescingWindowMillis + " milli seconds of each other");
+		}
+		String executionModeName = schedulerConfig.get(SCHEDULER_EXECUTION_MODE).asString()
+				.orElse(SCHEDULER_EXECUTION_MODE_DEFAULT.name());
+		executionMode = BatteryEventExecutionMode.getByName(executionModeName);
+		if (executionMode == null) {
+			log.warning("Unknown scheduler execution mode " + executionModeName + ", using "
+					+ SCHEDULER_EXECUTION_MODE_DEFAULT);
+			executionMode = SCHEDULER_EXECUTION_MODE_DEFAULT;
+		}
+		switch (executionMode) {
+		case THREAD_PER_EVENT:
+			eventThreadExecutor = buildEventThreadExecutor();
+			break;
+		case LANES:
+		default:
+			int workerThreads = schedulerConfig.get(SCHEDULER_WORKER_THREADS).asInt()
+					.orElse(SCHEDULER_WORKER_THREADS_DEFAULT);
+			log.info("Scheduler is using " + workerThreads + " worker threads for the battery event lanes");
+			workerPool = Executors.newFixedThreadPool(workerThreads);
+			break;
+		}
+	}
+
+	@PostConstruct
+	private void registerTimerMetrics() {
+		batteryEventSchedulerMetrics.registerTimer(timer);
+	}
+
+	@PreDestroy
+	private void shutdown() {
+		timer.shutdown();
+		if (workerPool != null) {
+			workerPool.shutdownNow();
+		}
+		if (eventThreadExecutor != null) {
+			eventThreadExecutor.shutdownNow();
+		}
+	}
+
+	// virtual threads only arrived as standard in Java 21 and we build for 17, so
+	// look for them at runtime and if they are not there fall back to a pool which
+	// creates a new thread when all of the existing ones are busy
+	private static ExecutorService buildEventThreadExecutor() {
+		try {
+			Method virtualThreadExecutorBuilder = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			log.info("Scheduler will run each event on it's own virtual thread");
+			return (ExecutorService) virtualThreadExecutorBuilder.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			log.info("Virtual threads are not available in this JVM, scheduler will run each event on it's own thread");
+			return Executors.newCachedThreadPool();
+		}
+	}
 
 	public void addFutureEvent(BatteryIndividualSchedulableEvent batteryIndividualSchedulableEvent,
 			boolean executePastEvent) throws BatteryEventInPastException {
@@ -32,53 +165,238 @@ public class BatteryIndividualSchedulableEventScheduler {
 						+ " as it's activation time is in the past");
 			}
 		}
-		// we will not schedule things immediataly, work out how far in the future this
-		// event must be
+		// we will not schedule things immediately, nothing runs before the minimum.
+		// Whether it's deferred is based on the events own time though, not the
+		// minimum, otherwise a repeat every second would always look deferred and
+		// never be compensated
 		ZonedDateTime futureMinimum = now.plusSeconds(MINIMUM_SECONDS_BEFORE_RUNNING);
-		ZonedDateTime scheduleTime = batteryIndividualSchedulableEvent.getScheduledEventActivationTime().isBefore(
-				futureMinimum) ? futureMinimum : batteryIndividualSchedulableEvent.getScheduledEventActivationTime();
-		// in how many seconds is this event ?
-		long timeToNextEvent = scheduleTime.toEpochSecond() - now.toEpochSecond();
-		ScheduledFuture<?> eventFuture = executor.schedule(() -> {
-			// synchronize on the parent event to ensure that only one of it's tasks is
-			// running at any point in time
-			synchronized (batteryIndividualSchedulableEvent.getParentEvent()) {
-				boolean removeParentBatteryEvent;
-				batteryIndividualSchedulableEvent.startProcessing();
+		boolean deferred = batteryIndividualSchedulableEvent.getScheduledEventActivationTime().isBefore(now);
+		ZonedDateTime scheduleTime = batteryIndividualSchedulableEvent.getScheduledEventActivationTime()
+				.isBefore(futureMinimum) ? futureMinimum
+						: batteryIndividualSchedulableEvent.getScheduledEventActivationTime();
+		// in how many nano seconds is this event ? keep the sub second part or
+		// repeating events will fire up to a second out
+		long timeToNextEvent = Duration.between(now, scheduleTime).toNanos();
+		// if it's running when it was asked to then pull it forward by however late
+		// this parents events timers have been firing, deferred events don't have a
+		// meaningful target time so are left alone. This can take a non deferred
+		// event a little under the minimum, but never by more than the max drift
+		// compensation
+		batteryIndividualSchedulableEvent.setActivationDeferred(deferred);
+		if (driftCompensation && !deferred) {
+			timeToNextEvent = Math.max(0,
+					timeToNextEvent - batteryIndividualSchedulableEvent.getParentEvent().getDriftCompensationNanos());
+		}
+		Executor eventExecutor = getEventExecutor(batteryIndividualSchedulableEvent.getBatteryData());
+		// the parents mailbox work is done in the batteries lane along with it's
+		// events
+		batteryIndividualSchedulableEvent.getParentEvent().getMailbox().setExecutor(eventExecutor);
+		// make sure the parent knows about this so it can be cancelled if needs be
+		batteryIndividualSchedulableEvent.getParentEvent().addChildEvent(batteryIndividualSchedulableEvent);
+		ScheduledEventHandle eventFuture = timer.schedule(
+				() -> dispatchEvent(batteryIndividualSchedulableEvent, eventExecutor), timeToNextEvent,
+				TimeUnit.NANOSECONDS);
+		log.info("Scheduler has added lambda to run in " + TimeUnit.NANOSECONDS.toMillis(timeToNextEvent)
+				+ " milli seconds for event "
+				+ batteryIndividualSchedulableEvent);
+		batteryIndividualSchedulableEvent.setEventFuture(eventFuture);
+	}
+
+	// a repeating event has been rolled forward, make sure that survives a restart
+	public void eventRescheduled(BatterySchedulableEvent batterySchedulableEvent,
+			ZonedDateTime nextPlannedStartTime) {
+		batteryEventJournal.recordReschedule(batterySchedulableEvent.getBatteryData().getBatteryName(),
+				batterySchedulableEvent.getBatteryEvent(), nextPlannedStartTime);
+	}
+
+	// called by the timer when the event is due, this is where the timer drift is
+	// measured, anything after here is waiting for the lane or the mailbox which
+	// bringing the timer forward can't fix
+	private void dispatchEvent(BatteryIndividualSchedulableEvent batteryIndividualSchedulableEvent,
+			Executor eventExecutor) {
+		long timerLatenessNanos = Duration
+				.between(batteryIndividualSchedulableEvent.getScheduledEventActivationTime(), ZonedDateTime.now())
+				.toNanos();
+		String coalescingKey = batteryIndividualSchedulableEvent.getCoalescingKey();
+		if ((coalescingWindowMillis <= 0) || (coalescingKey == null)) {
+			long dispatchedNanos = System.nanoTime();
+			eventExecutor.execute(() -> executeEvent(batteryIndividualSchedulableEvent, dispatchedNanos,
+					timerLatenessNanos, null));
+			return;
+		}
+		// hold on to the event in case anything else wants to write the same setting,
+		// the first event for the key starts the window. The wait is deliberate so
+		// it's not a measure of timer drift
+		batteryIndividualSchedulableEvent.setActivationDeferred(true);
+		coalescingEvents.compute(coalescingKey, (key, pending) -> {
+			if (pending == null) {
+				pending = new ArrayList<>();
+				timer.schedule(() -> flushCoalescedEvents(key, eventExecutor), coalescingWindowMillis,
+						TimeUnit.MILLISECONDS);
+			}
+			pending.add(batteryIndividualSchedulableEvent);
+			return pending;
+		});
+	}
+
+	// the coalescing window has closed, the event that was due last makes the write
+	// and the others just complete using it's result
+	private void flushCoalescedEvents(String coalescingKey, Executor eventExecutor) {
+		List<BatteryIndividualSchedulableEvent> waiting = coalescingEvents.remove(coalescingKey);
+		if (waiting == null) {
+			return;
+		}
+		// anything cancelled or deleted while it was in the window mustn't win, it
+		// would write the setting after the user asked for it to be stopped
+		List<BatteryIndividualSchedulableEvent> pending = new ArrayList<>(waiting.size());
+		for (BatteryIndividualSchedulableEvent waitingEvent : waiting) {
+			if (isStillScheduled(waitingEvent)) {
+				pending.add(waitingEvent);
+			} else {
+				log.info("Dropping coalesced event " + waitingEvent + " as it has been cancelled or deleted");
+			}
+		}
+		if (pending.isEmpty()) {
+			return;
+		}
+		Collections.sort(pending);
+		BatteryIndividualSchedulableEvent lastEvent = pending.get(pending.size() - 1);
+		for (BatteryIndividualSchedulableEvent supersededEvent : pending.subList(0, pending.size() - 1)) {
+			supersededEvent.setCoalescedInto(lastEvent);
+		}
+		if (pending.size() > 1) {
+			log.info("Coalesced " + pending.size() + " writes for " + coalescingKey + " into event "
+					+ lastEvent.getEventId());
+		}
+		long dispatchedNanos = System.nanoTime();
+		// the superseded events may have different parents and so different mailboxes,
+		// only post them once the last event has finished so they can see it's result
+		// coalesced events are deferred so their lateness is not used
+		eventExecutor.execute(() -> executeEvent(lastEvent, dispatchedNanos, 0,
+				() -> pending.subList(0, pending.size() - 1)
+						.forEach(supersededEvent -> executeEvent(supersededEvent, dispatchedNanos, 0, null))));
+	}
+
+	private Executor getEventExecutor(BatteryData batteryData) {
+		if (executionMode == BatteryEventExecutionMode.THREAD_PER_EVENT) {
+			return eventThreadExecutor;
+		}
+		return getLane(batteryData);
+	}
+
+	// get the lane for the battery, creating it if this is the first event for it
+	private BatteryEventLane getLane(BatteryData batteryData) {
+		return lanes.computeIfAbsent(batteryData.getBatteryName(), batteryName -> {
+			BatteryEventLane lane = new BatteryEventLane(batteryName, workerPool);
+			batteryEventSchedulerMetrics.registerLane(lane);
+			return lane;
+		});
+	}
+
+	// dispatchedNanos is when the event was handed to the executor, so we can see
+	// how long it was queued for, timerLatenessNanos is how late the timer fired
+	private void executeEvent(BatteryIndividualSchedulableEvent batteryIndividualSchedulableEvent,
+			long dispatchedNanos, long timerLatenessNanos, Runnable afterExecution) {
+		// the event runs as a message in the parent events mailbox, this ensures that
+		// only one of it's tasks is running at any point in time and that starts,
+		// cancels and deletes for the parent happen in the order they were asked for
+		batteryIndividualSchedulableEvent.getParentEvent().getMailbox()
+				.post(() -> processEvent(batteryIndividualSchedulableEvent, dispatchedNanos, timerLatenessNanos,
+						afterExecution));
+	}
+
+	// only called from within the parent events mailbox
+	private void processEvent(BatteryIndividualSchedulableEvent batteryIndividualSchedulableEvent,
+			long dispatchedNanos, long timerLatenessNanos, Runnable afterExecution) {
+		try {
+			// once the timer has fired the event may have been waiting in the lane, the
+			// coalescing window or behind other messages in the mailbox, if the parent was
+			// cleared or deleted in that time then the event must not run, if it did it
+			// would write to the battery and reschedule itself back into the parent
+			if (!isStillScheduled(batteryIndividualSchedulableEvent)) {
+				log.info("Skipping event " + batteryIndividualSchedulableEvent
+						+ " as it was cancelled or deleted after it became due");
+				return;
+			}
+			long startNanos = System.nanoTime();
+			ZonedDateTime startTime = ZonedDateTime.now();
+			recordActivationLateness(batteryIndividualSchedulableEvent, timerLatenessNanos);
+			boolean removeParentBatteryEvent;
+			batteryIndividualSchedulableEvent.startProcessing();
+			try {
+				removeParentBatteryEvent = batteryIndividualSchedulableEvent
+						.executeBatteryIndividualSchedulableEvent(batteryManager, this);
+			} catch (Exception e) {
+				log.warning("Problem performing operation " + batteryIndividualSchedulableEvent + " problem is "
+						+ e.getLocalizedMessage());
+				e.printStackTrace();
+				removeParentBatteryEvent = true;
+			}
+			batteryEventSchedulerMetrics.recordEventTimings(batteryIndividualSchedulableEvent,
+					TimeUnit.NANOSECONDS.toMillis(startNanos - dispatchedNanos),
+					millisBetween(batteryIndividualSchedulableEvent.getScheduledEventActivationTime(), startTime),
+					millisBetween(batteryIndividualSchedulableEvent.getPlannedEventActivationTime(), startTime),
+					TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+			// tell anything looking that we've stopped doing something in this specific
+			// event
+			batteryIndividualSchedulableEvent.stopProcessing();
+			if (removeParentBatteryEvent) {
 				try {
-					removeParentBatteryEvent = batteryIndividualSchedulableEvent
-							.executeBatteryIndividualSchedulableEvent(batteryManager, this);
-				} catch (Exception e) {
-					log.warning("Problem performing operation " + batteryIndividualSchedulableEvent + " problem is "
-							+ e.getLocalizedMessage());
+					// stop any child events, maybe the process has stopped part way through for
+					// some valid reason.
+					batteryIndividualSchedulableEvent.getParentEvent().clearScheduledChildEvents(false);
+					batteryIndividualSchedulableEvent.getBatteryData()
+							.removeEvent(batteryIndividualSchedulableEvent.getParentEvent().getBatteryEvent());
+					batteryEventJournal.recordComplete(batteryIndividualSchedulableEvent.getBatteryData().getBatteryName(),
+							batteryIndividualSchedulableEvent.getParentEvent().getBatteryEvent().getEventId());
+				} catch (BatteryEventOutstandingChildTasksException e) {
+					log.severe("excuting " + batteryIndividualSchedulableEvent + " said to remove the parent event "
+							+ batteryIndividualSchedulableEvent.getParentEvent()
+							+ " however this failed as it has outstanding child tasks, probabaly programming error");
+				} catch (BatteryEventActiveChildTasksException e) {
+					log.severe("excuting " + batteryIndividualSchedulableEvent + " said to remove the parent event "
+							+ batteryIndividualSchedulableEvent.getParentEvent()
+							+ " however this failed as it has active child tasks, probabaly programming error");
 					e.printStackTrace();
-					removeParentBatteryEvent = true;
-				}
-				// tell anything looking that we've stopped doing something in this specific
-				// event
-				batteryIndividualSchedulableEvent.stopProcessing();
-				if (removeParentBatteryEvent) {
-					try {
-						// stop any child events, maybe the process has stopped part way through for
-						// some valid reason.
-						batteryIndividualSchedulableEvent.getParentEvent().clearScheduledChildEvents(false);
-						batteryIndividualSchedulableEvent.getBatteryData()
-								.removeEvent(batteryIndividualSchedulableEvent.getParentEvent().getBatteryEvent());
-					} catch (BatteryEventOutstandingChildTasksException e) {
-						log.severe("excuting " + batteryIndividualSchedulableEvent + " said to remove the parent event "
-								+ batteryIndividualSchedulableEvent.getParentEvent()
-								+ " however this failed as it has outstanding child tasks, probabaly programming error");
-					} catch (BatteryEventActiveChildTasksException e) {
-						log.severe("excuting " + batteryIndividualSchedulableEvent + " said to remove the parent event "
-								+ batteryIndividualSchedulableEvent.getParentEvent()
-								+ " however this failed as it has active child tasks, probabaly programming error");
-						e.printStackTrace();
-					}
 				}
 			}
-		}, timeToNextEvent, TimeUnit.SECONDS);
-		log.info("Scheduler has added lambda to run in " + timeToNextEvent + " seconds for event "
-				+ batteryIndividualSchedulableEvent);
-		batteryIndividualSchedulableEvent.setEventFuture(eventFuture);
+		} finally {
+			if (afterExecution != null) {
+				afterExecution.run();
+			}
+		}
+	}
+
+	// is the event still one of it's parents children and not been cancelled ?
+	// only definitive when called from within the parent events mailbox
+	private static boolean isStillScheduled(BatteryIndividualSchedulableEvent batteryIndividualSchedulableEvent) {
+		ScheduledEventHandle eventFuture = batteryIndividualSchedulableEvent.getEventFuture();
+		if ((eventFuture != null) && eventFuture.isCancelled()) {
+			return false;
+		}
+		return batteryIndividualSchedulableEvent.getParentEvent().getChildEvents()
+				.containsKey(batteryIndividualSchedulableEvent.getEventId());
+	}
+
+	// how far from it's scheduled time did the events timer actually fire ? the
+	// time spent queued is in the event timings metrics instead
+	private void recordActivationLateness(BatteryIndividualSchedulableEvent batteryIndividualSchedulableEvent,
+			long latenessNanos) {
+		log.fine("Event " + batteryIndividualSchedulableEvent + " timer fired "
+				+ TimeUnit.NANOSECONDS.toMillis(latenessNanos) + " milli seconds after it's scheduled time");
+		if (batteryIndividualSchedulableEvent.isActivationDeferred()
+				|| (Math.abs(latenessNanos) > maxDriftCompensationNanos)) {
+			return;
+		}
+		batteryIndividualSchedulableEvent.getParentEvent().recordActivationLateness(latenessNanos);
+	}
+
+	// some events (e.g. the initial one for a brand new event) may not have a planned
+	// time
+	private static long millisBetween(ZonedDateTime from, ZonedDateTime to) {
+		if (from == null) {
+			return 0;
+		}
+		return Duration.between(from, to).toMillis();
 	}
 }
@@ -14,7 +14,7 @@ import lombok.extern.java.Log;
 
 @Log
 @Data
-@EqualsAndHashCode(callSuper = true)
+@EqualsAndHashCode(callSuper = true, doNotUseGetters = true)
 @SuperBuilder
 public class BatteryGetBatteryChargeLevelEvent extends BatteryIndividualSchedulableEvent {
 	public BatteryGetBatteryChargeLevelEvent(BatteryIndividualSchedulableEvent batteryIndividualSchedulableEvent) {
@@ -0,0 +1,117 @@
+package graves.tim.powermanagement.server.batteries.manager.events.active;
+
+import java.time.ZonedDateTime;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import graves.tim.powermanagement.common.data.DataItemIncorrectBooleanFormatException;
+import graves.tim.powermanagement.common.data.DataItemIncorrectIntegerFormatException;
+import graves.tim.powermanagement.common.data.DataItemIncorrectTypeException;
+import graves.tim.powermanagement.common.data.DataItemNotFoundException;
+import graves.tim.powermanagement.common.exceptions.BatteryEventInPastException;
+import graves.tim.powermanagement.common.exceptions.BatteryEventNoRepeatException;
+import graves.tim.powermanagement.common.exceptions.BatteryEventRepeatCompletedException;
+import graves.tim.powermanagement.common.exceptions.BatteryInvalidParameterException;
+import graves.tim.powermanagement.common.exceptions.BatteryProgrammingProblemException;
+import graves.tim.powermanagement.common.exceptions.BatteryReadOnlySettingException;
+import graves.tim.powermanagement.common.exceptions.BatteryUnauthorisedAccessException;
+import graves.tim.powermanagement.common.exceptions.BatteryUnknownSettingException;
+import graves.tim.powermanagement.common.exceptions.BatteryUnsupportedOperationException;
+import graves.tim.powermanagement.server.batteries.manager.BatteryData;
+import graves.tim.powermanagement.server.batteries.manager.BatteryManager;
+import graves.tim.powermanagement.server.batteries.manager.events.BatteryIndividualSchedulableEventScheduler;
+import graves.tim.powermanagement.server.batteries.manager.events.BatteryIndividualSchedulableEventType;
+import graves.tim.powermanagement.server.batteries.manager.events.core.BatteryIndividualSchedulableEvent;
+import graves.tim.powermanagement.server.batteries.manager.events.core.BatterySchedulableEvent;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import lombok.experimental.SuperBuilder;
+import lombok.extern.java.Log;
+
+/**
+ * Common processing for the events that write the batteries reserve level.
+ * These can be coalesced by the scheduler, if several of them for the same
+ * battery fall due together only the last one actually writes to the battery
+ * and the others just record that their write was superseded.
+ */
+@Log
+@Data
+@EqualsAndHashCode(callSuper = true, doNotUseGetters = true)
+@SuperBuilder
+public abstract class BatteryReserveLevelIndividualEvent extends BatteryIndividualSchedulableEvent {
+	public final static String RESERVE_LEVEL_SETTING = "reserveLevel";
+	// set once we have actually written the reserve level, used by any events that
+	// were coalesced into us
+	@ToString.Exclude
+	@EqualsAndHashCode.Exclude
+	@JsonIgnore
+	private boolean reserveLevelApplied;
+	@ToString.Exclude
+	@EqualsAndHashCode.Exclude
+	@JsonIgnore
+	private int appliedReserveLevel;
+	@ToString.Exclude
+	@EqualsAndHashCode.Exclude
+	@JsonIgnore
+	private int previousReserveLevel;
+
+	public BatteryReserveLevelIndividualEvent(
+			BatteryIndividualSchedulableEventType batteryIndividualSchedulableEventType, BatteryData batteryData,
+			BatterySchedulableEvent parentBatteryScheduledEvent) {
+		super(batteryIndividualSchedulableEventType, batteryData, parentBatteryScheduledEvent);
+	}
+
+	@Override
+	public String getCoalescingKey() {
+		return getBatteryData().getBatteryName() + "/" + RESERVE_LEVEL_SETTING;
+	}
+
+	// work out the reserve level this event wants given the batteries current
+	// charge level, the result must be within the batteries allowed range
+	protected abstract int calculateReserveLevel(int currentLevel)
+			throws DataItemIncorrectIntegerFormatException, DataItemIncorrectTypeException, DataItemNotFoundException;
+
+	@Override
+	public boolean executeBatteryIndividualSchedulableEvent(BatteryManager batteryManager,
+			BatteryIndividualSchedulableEventScheduler batteryIndividualSchedulableEventScheduler)
+			throws DataItemIncorrectIntegerFormatException, DataItemIncorrectTypeException, DataItemNotFoundException,
+			BatteryUnauthorisedAccessException, BatteryInvalidParameterException, BatteryUnknownSettingException,
+			BatteryUnsupportedOperationException, BatteryProgrammingProblemException,
+			DataItemIncorrectBooleanFormatException, BatteryReadOnlySettingException {
+		reserveLevelApplied = false;
+		BatteryIndividualSchedulableEvent coalescedInto = getCoalescedInto();
+		if ((coalescedInto instanceof BatteryReserveLevelIndividualEvent)
+				&& ((BatteryReserveLevelIndividualEvent) coalescedInto).isReserveLevelApplied()) {
+			// a later event for the same battery has already written it's reserve level,
+			// no point in us writing one that would be immediately replaced
+			BatteryReserveLevelIndividualEvent winner = (BatteryReserveLevelIndividualEvent) coalescedInto;
+			log.info("Set reserve level for battery " + this.getBatteryData().getBatteryName()
+					+ " was coalesced into event " + winner.getEventId() + ", Previous reserve level "
+					+ winner.getPreviousReserveLevel() + ", Applied reserve level " + winner.getAppliedReserveLevel());
+		} else {
+			int currentLevel = this.getBatteryData().retrieveCurrentChargeLevel();
+			int desiredReserveLevel = calculateReserveLevel(currentLevel);
+			previousReserveLevel = this.getBatteryData().retrieveBattery()
+					.applyBatteryReserveLevel(desiredReserveLevel);
+			appliedReserveLevel = desiredReserveLevel;
+			reserveLevelApplied = true;
+			log.info("Set reserve level for battery " + this.getBatteryData().getBatteryName()
+					+ "+Current battery level " + currentLevel + ", Previous reserve level " + previousReserveLevel
+					+ ", Desired reserve level " + desiredReserveLevel);
+		}
+		// allow for this to be rescheduled - though most are likely to be one-offs
+		try {
+			getParentEvent().reschedule(this, batteryIndividualSchedulableEventScheduler);
+			return false;
+		} catch (BatteryEventRepeatCompletedException e) {
+			log.info("Repeat completed");
+		} catch (BatteryEventNoRepeatException e) {
+			log.info("No Repeat");
+		} catch (BatteryEventInPastException e) {
+			log.severe("Event was scheduled into the past which should not happen, scheduled time was "
+					+ dateTimeFormatter.format(ZonedDateTime.now()));
+		}
+		return true;
+	}
+}
@@ -14,7 +14,7 @@ import lombok.extern.java.Log;
 
 @Log
 @Data
-@EqualsAndHashCode(callSuper = true)
+@EqualsAndHashCode(callSuper = true, doNotUseGetters = true)
 @SuperBuilder
 public class BatterySavePowerInfoEvent extends BatteryIndividualSchedulableEvent {
 	public final static String BATTERY_SAVED_POWER_LEVEL = "batterySavedPowerLevel";
@@ -1,27 +1,12 @@
 package graves.tim.powermanagement.server.batteries.manager.events.active;
 
-import java.time.ZonedDateTime;
-
-import graves.tim.powermanagement.common.data.DataItemIncorrectBooleanFormatException;
 import graves.tim.powermanagement.common.data.DataItemIncorrectIntegerFormatException;
 import graves.tim.powermanagement.common.data.DataItemIncorrectTypeException;
 import graves.tim.powermanagement.common.data.DataItemNotFoundException;
 import graves.tim.powermanagement.common.data.PerBatterySettings;
 import graves.tim.powermanagement.common.data.SetReserveLevelRelativeToCurrentLevelLevelEvent;
-import graves.tim.powermanagement.common.exceptions.BatteryEventInPastException;
-import graves.tim.powermanagement.common.exceptions.BatteryEventNoRepeatException;
-import graves.tim.powermanagement.common.exceptions.BatteryEventRepeatCompletedException;
-import graves.tim.powermanagement.common.exceptions.BatteryInvalidParameterException;
-import graves.tim.powermanagement.common.exceptions.BatteryProgrammingProblemException;
-import graves.tim.powermanagement.common.exceptions.BatteryReadOnlySettingException;
-import graves.tim.powermanagement.common.exceptions.BatteryUnauthorisedAccessException;
-import graves.tim.powermanagement.common.exceptions.BatteryUnknownSettingException;
-import graves.tim.powermanagement.common.exceptions.BatteryUnsupportedOperationException;
 import graves.tim.powermanagement.server.batteries.manager.BatteryData;
-import graves.tim.powermanagement.server.batteries.manager.BatteryManager;
-import graves.tim.powermanagement.server.batteries.manager.events.BatteryIndividualSchedulableEventScheduler;
 import graves.tim.powermanagement.server.batteries.manager.events.BatteryIndividualSchedulableEventType;
-import graves.tim.powermanagement.server.batteries.manager.events.core.BatteryIndividualSchedulableEvent;
 import graves.tim.powermanagement.server.batteries.manager.events.core.BatterySchedulableEvent;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
@@ -30,9 +15,9 @@ import lombok.extern.java.Log;
 
 @Log
 @Data
-@EqualsAndHashCode(callSuper = true)
+@EqualsAndHashCode(callSuper = true, doNotUseGetters = true)
 @SuperBuilder
-public class BatterySetReserveLevelRelativeToCurrentLevelIndividualEvent extends BatteryIndividualSchedulableEvent {
+public class BatterySetReserveLevelRelativeToCurrentLevelIndividualEvent extends BatteryReserveLevelIndividualEvent {
 
 	public BatterySetReserveLevelRelativeToCurrentLevelIndividualEvent(BatteryData batteryData,
 			BatterySchedulableEvent parentBatteryScheduledEvent) {
@@ -41,13 +26,8 @@ public class BatterySetReserveLevelRelativeToCurrentLevelIndividualEvent extends
 	}
 
 	@Override
-	public boolean executeBatteryIndividualSchedulableEvent(BatteryManager batteryManager,
-			BatteryIndividualSchedulableEventScheduler batteryIndividualSchedulableEventScheduler)
-			throws DataItemIncorrectIntegerFormatException, DataItemIncorrectTypeException, DataItemNotFoundException,
-			BatteryUnauthorisedAccessException, BatteryInvalidParameterException, BatteryUnknownSettingException,
-			BatteryUnsupportedOperationException, BatteryProgrammingProblemException,
-			DataItemIncorrectBooleanFormatException, BatteryReadOnlySettingException {
-		int currentLevel = this.getBatteryData().retrieveBattery().retrieveCurrentChargeLevel();
+	protected int calculateReserveLevel(int currentLevel)
+			throws DataItemIncorrectIntegerFormatException, DataItemIncorrectTypeException, DataItemNotFoundException {
 		int optionalMinimumLevel = this.getParentEvent().getBatteryEvent()
 				.integerValue(SetReserveLevelRelativeToCurrentLevelLevelEvent.OPTIONAL_MINIMUM_RESERVE_RESERVE, -1);
 		int relativeReserveLevel = this.getParentEvent().getBatteryEvent()
@@ -68,22 +48,6 @@ public class BatterySetReserveLevelRelativeToCurrentLevelIndividualEvent extends
 		// make sure that the new relative level is within range
 		newReserveLevel = newReserveLevel < allowedMinimum ? allowedMinimum : newReserveLevel;
 		newReserveLevel = newReserveLevel > maximumBatteryLevel ? maximumBatteryLevel : newReserveLevel;
-		int returnedReserveLevel = this.getBatteryData().retrieveBattery().applyBatteryReserveLevel(newReserveLevel);
-		log.info("Set reserve level for battery " + this.getBatteryData().getBatteryName() + "+Current battery level "
-				+ currentLevel + ", Previous reserve level " + returnedReserveLevel + ", New reserve level "
-				+ newReserveLevel);
-		// allow for this to be rescheduled - though most are likely to be one-offs
-		try {
-			getParentEvent().reschedule(this, batteryIndividualSchedulableEventScheduler);
-			return false;
-		} catch (BatteryEventRepeatCompletedException e) {
-			log.info("Repeat completed");
-		} catch (BatteryEventNoRepeatException e) {
-			log.info("No Repeat");
-		} catch (BatteryEventInPastException e) {
-			log.severe("Event was scheduled into the past which should not happen, scheduled time was "
-					+ dateTimeFormatter.format(ZonedDateTime.now()));
-		}
-		return true;
+		return newReserveLevel;
 	}
 }
@@ -3,8 +3,10 @@ package graves.tim.powermanagement.server.batteries.manager.events.active;
 import graves.tim.powermanagement.common.data.BatteryEvent;
 import graves.tim.powermanagement.common.data.DataItemException;
 import graves.tim.powermanagement.common.data.TestTickEvent;
+import graves.tim.powermanagement.common.exceptions.BatteryEventActiveChildTasksException;
 import graves.tim.powermanagement.common.exceptions.BatteryEventInPastException;
 import graves.tim.powermanagement.common.exceptions.BatteryEventNoRepeatException;
+import graves.tim.powermanagement.common.exceptions.BatteryEventOutstandingChildTasksException;
 import graves.tim.powermanagement.common.exceptions.BatteryEventRepeatCompletedException;
 import graves.tim.powermanagement.server.batteries.manager.BatteryData;
 import graves.tim.powermanagement.server.batteries.manager.events.BatteryIndividualSchedulableEventScheduler;
@@ -23,6 +25,12 @@ public class TestTickNonSystemScheduledEvent extends BatterySchedulableEvent {
 		return true;
 	}
 
+	public void deleteEvent() throws BatteryEventOutstandingChildTasksException, BatteryEventActiveChildTasksException {
+		// we can just cancel any remaining tasks
+		super.clearScheduledChildEvents(false);
+		super.deleteEvent();
+	}
+
 	@Override
 	public void schedule(BatteryIndividualSchedulableEventScheduler batteryIndividualSchedulableEventScheduler)
 			throws BatteryEventInPastException {
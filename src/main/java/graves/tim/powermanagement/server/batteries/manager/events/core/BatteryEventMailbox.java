@@ -0,0 +1,86 @@
+package graves.tim.powermanagement.server.batteries.manager.events.core;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import lombok.extern.java.Log;
+
+/**
+ * A single consumer mailbox. Messages can be posted from any thread, they are
+ * processed one at a time in the order they were posted. Posting only queues
+ * the message, the messages are processed by a task on the mailbox's executor
+ * (the scheduler sets this to the battery's lane so the mailbox work is part of
+ * the battery's serial lane), never on the thread that posted them.
+ *
+ * Anything only touched from within messages needs no locking as there is only
+ * ever one consumer at a time
+ */
+@Log
+public class BatteryEventMailbox {
+	private final Queue<Runnable> messages = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean processing = new AtomicBoolean(false);
+	private volatile Thread consumer;
+	// until the event has been handed to the scheduler there's no battery lane to
+	// use, nothing much gets posted then but it still mustn't run on the caller
+	private volatile Executor executor = ForkJoinPool.commonPool();
+
+	public void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	public void post(Runnable message) {
+		messages.add(message);
+		scheduleProcessing();
+	}
+
+	// true if this thread is currently processing a message, if so anything that
+	// would normally be posted can be done directly
+	public boolean isConsumerThread() {
+		return consumer == Thread.currentThread();
+	}
+
+	public int getPendingMessages() {
+		return messages.size();
+	}
+
+	private void scheduleProcessing() {
+		// only one task can be processing the messages at a time, if there's one
+		// already it will pick up our message
+		if (processing.compareAndSet(false, true)) {
+			try {
+				executor.execute(this::processMessages);
+			} catch (RejectedExecutionException e) {
+				processing.set(false);
+				log.severe("Executor rejected the mailbox processing task because " + e.getLocalizedMessage());
+				throw e;
+			}
+		}
+	}
+
+	private void processMessages() {
+		consumer = Thread.currentThread();
+		try {
+			Runnable message;
+			while ((message = messages.poll()) != null) {
+				try {
+					message.run();
+				} catch (RuntimeException e) {
+					log.warning("Problem processing mailbox message, problem is " + e.getLocalizedMessage());
+					e.printStackTrace();
+				}
+			}
+		} finally {
+			consumer = null;
+			processing.set(false);
+		}
+		// something may have been posted after the last poll but before we stopped
+		// being the consumer, if so make sure it gets picked up
+		if (!messages.isEmpty()) {
+			scheduleProcessing();
+		}
+	}
+}
@@ -2,7 +2,7 @@ package graves.tim.powermanagement.server.batteries.manager.events.core;
 
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
@@ -11,8 +11,11 @@ import graves.tim.powermanagement.server.batteries.manager.BatteryData;
 import graves.tim.powermanagement.server.batteries.manager.BatteryManager;
 import graves.tim.powermanagement.server.batteries.manager.events.BatteryIndividualSchedulableEventScheduler;
 import graves.tim.powermanagement.server.batteries.manager.events.BatteryIndividualSchedulableEventType;
+import graves.tim.powermanagement.server.batteries.manager.events.timers.ScheduledEventHandle;
+import lombok.AccessLevel;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
+import lombok.Setter;
 import lombok.ToString;
 import lombok.experimental.SuperBuilder;
 import lombok.extern.java.Log;
@@ -23,8 +26,11 @@ import lombok.extern.java.Log;
 @EqualsAndHashCode(of = "scheduledEventActivationTime")
 public abstract class BatteryIndividualSchedulableEvent
 		implements Comparable<BatteryIndividualSchedulableEvent>, Cloneable {
-	private static long eventIdCounter = 0;
-	private final long eventId = eventIdCounter++;
+	private static AtomicLong eventIdCounter = new AtomicLong(0);
+	// each scheduled instance needs it's own id as that's how the parent keeps track
+	// of it, clones get a new one when they are generated
+	@Setter(AccessLevel.NONE)
+	private long eventId = eventIdCounter.getAndIncrement();
 	public static DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ISO_DATE_TIME;
 	@ToString.Exclude // we don't want a recursive ping pong between two strings
 	@JsonIgnore
@@ -34,9 +40,23 @@ public abstract class BatteryIndividualSchedulableEvent
 	private ZonedDateTime plannedEventActivationTime;
 	// this is used when running to enable us to manage the parent object
 	@ToString.Exclude
+	@JsonIgnore
 	private BatterySchedulableEvent parentEvent;
-	// our scheduled future, used if we need to cancel ourselves
-	private ScheduledFuture<?> eventFuture;
+	// our scheduled timer handle, used if we need to cancel ourselves
+	@ToString.Exclude
+	@JsonIgnore
+	private ScheduledEventHandle eventFuture;
+	// set by the scheduler if it had to push our start time back (e.g. when
+	// catching up on an old event), if so our start time is not a useful measure
+	// of drift
+	@ToString.Exclude
+	@JsonIgnore
+	private boolean activationDeferred;
+	// if the scheduler merged us with other events that write the same setting this
+	// is the one which does the actual write
+	@ToString.Exclude
+	@JsonIgnore
+	private BatteryIndividualSchedulableEvent coalescedInto;
 
 	public BatteryIndividualSchedulableEvent(
 			BatteryIndividualSchedulableEventType batteryIndividualSchedulableEventType, BatteryData targetBattery,
@@ -66,7 +86,10 @@ public abstract class BatteryIndividualSchedulableEvent
 		} catch (CloneNotSupportedException e) {
 			throw new NotYetImplementedException("Major programmikng problem here, trying to clone but can't");
 		}
+		other.eventId = eventIdCounter.getAndIncrement();
 		other.eventFuture = null;
+		other.activationDeferred = false;
+		other.coalescedInto = null;
 		other.plannedEventActivationTime = planned;
 		other.scheduledEventActivationTime = scheduled;
 		return other;
@@ -78,6 +101,15 @@ public abstract class BatteryIndividualSchedulableEvent
 		this.batteryIndividualSchedulableEventType = batteryIndividualSchedulableEventType;
 	}
 
+	// events which write to a battery setting can return a key made up of the
+	// battery and setting, the scheduler may then merge events with the same key
+	// which fall due together so only the last one does the write. null means this
+	// event is never merged
+	@JsonIgnore
+	public String getCoalescingKey() {
+		return null;
+	}
+
 	@Override
 	public int compareTo(BatteryIndividualSchedulableEvent other) {
 		return this.scheduledEventActivationTime.compareTo(other.scheduledEventActivationTime);
@@ -85,7 +117,7 @@ public abstract class BatteryIndividualSchedulableEvent
 
 	// flags that this child events is running, the scheduler will run the
 	// actual child events processing
-	// (including the stop / start) in a synchronized block on this to ensure that
+	// (including the stop / start) as a message in the parents mailbox to ensure that
 	// only one task from any parent is running at a time
 	public void startProcessing() {
 		parentEvent.processingChildEventStart(this);
@@ -93,7 +125,7 @@ public abstract class BatteryIndividualSchedulableEvent
 
 	// flags that this child events is no longer running, the scheduler will run the
 	// actual child events processing
-	// (including the stop / start) in a synchronized block on this to ensure that
+	// (including the stop / start) as a message in the parents mailbox to ensure that
 	// only one task from any parent is running at a time
 	public void stopProcessing() {
 		parentEvent.processingChildEventEnd(this);
@@ -101,7 +133,7 @@ public abstract class BatteryIndividualSchedulableEvent
 
 	// actually run the child event, the scheduler will run the
 	// actual child events processing
-	// (including the stop / start) in a synchronized block on this to ensure that
+	// (including the stop / start) as a message in the parents mailbox to ensure that
 	// only one task from any parent is running at a time
 	public abstract boolean executeBatteryIndividualSchedulableEvent(BatteryManager batteryManager,
 			BatteryIndividualSchedulableEventScheduler batteryIndividualSchedulableEventScheduler) throws Exception;
@@ -2,8 +2,9 @@ package graves.tim.powermanagement.server.batteries.manager.events.core;
 
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
@@ -26,18 +27,37 @@ import lombok.extern.java.Log;
 
 @Log
 @Data
-@EqualsAndHashCode(callSuper = true)
+@EqualsAndHashCode(callSuper = true, doNotUseGetters = true)
 @NoArgsConstructor
 public abstract class BatterySchedulableEvent extends EventDataItems {
 	public static DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ISO_DATE_TIME;
-	private Map<Long, BatteryIndividualSchedulableEvent> childEvents = new HashMap<>();
-	private boolean eventInProgress = false; // when a child task starts this will be set to true, then reverted to
-												// false when the child task is finished, this will stop the main task
-												// from being dropped while there is an active child task
+	// how much weight a new lateness measurement has when updating the drift
+	// compensation, 1/DRIFT_SMOOTHING_FACTOR of the difference is applied each time
+	public final static int DRIFT_SMOOTHING_FACTOR = 4;
+	// only changed from within our mailbox, it's concurrent so it's safe for
+	// anything (e.g. the REST api) to read it at any time
+	private Map<Long, BatteryIndividualSchedulableEvent> childEvents = new ConcurrentHashMap<>();
+	// when a child task starts this will be set to true, then reverted to false
+	// when the child task is finished, this will stop the main task from being
+	// dropped while there is an active child task
+	private volatile boolean eventInProgress = false;
 	@ToString.Exclude // we don't want a recursive ping pong between two strings
 	@JsonIgnore
 	private BatteryData batteryData;
 	private BatteryEvent batteryEvent;
+	// our child events run as messages in this as do cancels and deletes, so only
+	// one of them is active at a time and they happen in order
+	@ToString.Exclude
+	@EqualsAndHashCode.Exclude
+	@JsonIgnore
+	private final BatteryEventMailbox mailbox = new BatteryEventMailbox();
+	// smoothed amount by which our child events have started after their scheduled
+	// time, the scheduler pulls future child events forward by this much to counter
+	// the drift
+	@ToString.Exclude
+	@EqualsAndHashCode.Exclude
+	@JsonIgnore
+	private final AtomicLong driftCompensation = new AtomicLong(0);
 
 	public BatterySchedulableEvent(BatteryData batteryData, BatteryEvent batteryEvent) {
 		this.batteryData = batteryData;
@@ -49,9 +69,33 @@ public abstract class BatterySchedulableEvent extends EventDataItems {
 		return batteryData;
 	}
 
+	// deletes the event from within our mailbox. If we're already in the mailbox
+	// it's done now, otherwise it's handed to the mailbox and this returns
+	// straight away, anything that's already queued in the mailbox (e.g. a child
+	// event that's due) runs first. If a child event is running right now this
+	// fails, just as it always has
+	public void submitDeleteEvent()
+			throws BatteryEventOutstandingChildTasksException, BatteryEventActiveChildTasksException {
+		if (mailbox.isConsumerThread()) {
+			deleteEvent();
+			return;
+		}
+		if (isEventInProgress()) {
+			throw new BatteryEventActiveChildTasksException(
+					"Can't delete this event " + this + " as it has an active child task");
+		}
+		mailbox.post(() -> {
+			try {
+				deleteEvent();
+			} catch (BatteryEventOutstandingChildTasksException | BatteryEventActiveChildTasksException e) {
+				log.severe("Problem deleting event " + this + " because " + e.getLocalizedMessage());
+			}
+		});
+	}
+
 	// this is the basic version, super classes may do more.
 	// the super class is responsible for removing this event from anywhere it may
-	// be referenced
+	// be referenced. This is run from within our mailbox
 	public void deleteEvent() throws BatteryEventOutstandingChildTasksException, BatteryEventActiveChildTasksException {
 		if (isEventInProgress()) {
 			throw new BatteryEventActiveChildTasksException(
@@ -64,8 +108,27 @@ public abstract class BatterySchedulableEvent extends EventDataItems {
 	}
 
 	public void clearScheduledChildEvents(boolean cancelActiveEvent) {
-		childEvents.values().stream().forEach(event -> event.getEventFuture().cancel(cancelActiveEvent));
-		childEvents.clear();
+		inMailbox(() -> {
+			childEvents.values().stream().filter(event -> event.getEventFuture() != null)
+					.forEach(event -> event.getEventFuture().cancel(cancelActiveEvent));
+			childEvents.clear();
+		});
+	}
+
+	// records a child event that has been handed to the scheduler so we can cancel
+	// it later if needs be
+	public void addChildEvent(BatteryIndividualSchedulableEvent batteryIndividualSchedulableEvent) {
+		inMailbox(() -> childEvents.put(batteryIndividualSchedulableEvent.getEventId(),
+				batteryIndividualSchedulableEvent));
+	}
+
+	// if we're already processing a message then just do it, otherwise queue it up
+	private void inMailbox(Runnable message) {
+		if (mailbox.isConsumerThread()) {
+			message.run();
+		} else {
+			mailbox.post(message);
+		}
 	}
 
 	public boolean hasChildTasksRemaining() {
@@ -79,7 +142,7 @@ public abstract class BatterySchedulableEvent extends EventDataItems {
 
 	// flags that one of the child events is running, the scheduler will run the
 	// actuall chile events
-	// (including the stop / start) in a synchronized block on this to ensure that
+	// (including the stop / start) as a message in our mailbox to ensure that
 	// only one task from any parent is running at a time
 	public void processingChildEventStart(BatteryIndividualSchedulableEvent batteryIndividualSchedulableEvent) {
 		setEventInProgress(true);
@@ -88,13 +151,26 @@ public abstract class BatterySchedulableEvent extends EventDataItems {
 	// flags that one of the child events is no longer running and then remove it
 	// from the list of child events, the scheduler will run the actual child
 	// events
-	// (including the stop / start) in a synchronized block on this to ensure that
+	// (including the stop / start) as a message in our mailbox to ensure that
 	// only one task from any parent is running at a time
 	public void processingChildEventEnd(BatteryIndividualSchedulableEvent batteryIndividualSchedulableEvent) {
 		setEventInProgress(false);
-		synchronized (childEvents) {
-			childEvents.remove(batteryIndividualSchedulableEvent.getEventId());
-		}
+		childEvents.remove(batteryIndividualSchedulableEvent.getEventId());
+	}
+
+	// called by the scheduler with how late (or early if negative) one of our
+	// child events actually started
+	public void recordActivationLateness(long latenessNanos) {
+		// the lateness is measured against a start time which already had the
+		// compensation applied, so it's the remaining error, add a fraction of that to
+		// the compensation
+		driftCompensation.accumulateAndGet(latenessNanos,
+				(current, lateness) -> current + (lateness / DRIFT_SMOOTHING_FACTOR));
+	}
+
+	@JsonIgnore
+	public long getDriftCompensationNanos() {
+		return driftCompensation.get();
 	}
 
 	// allows us to ensure that system wide events can only be applied to system
@@ -170,6 +246,7 @@ public abstract class BatterySchedulableEvent extends EventDataItems {
 				potentialRestartTime,
 				getScheduledStartTimeFromPlanned(batteryIndividualSchedulableEvent, potentialRestartTime));
 		batteryIndividualSchedulableEventScheduler.addFutureEvent(nextEvent, false);
+		batteryIndividualSchedulableEventScheduler.eventRescheduled(this, potentialRestartTime);
 	}
 
 	public boolean isSystemEvent() {
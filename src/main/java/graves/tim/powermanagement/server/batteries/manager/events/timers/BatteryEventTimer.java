@@ -0,0 +1,22 @@
+package graves.tim.powermanagement.server.batteries.manager.events.timers;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Works out when scheduled tasks are due and runs them. The tasks are run on
+ * the timers own thread so they must be quick, in practice they just hand the
+ * real work over to an executor
+ */
+public interface BatteryEventTimer {
+	public ScheduledEventHandle schedule(Runnable task, long delay, TimeUnit unit);
+
+	/**
+	 * @return the number of tasks waiting for their time to come
+	 */
+	public int getPendingTasks();
+
+	/**
+	 * Stop the timer, anything still waiting will not be run
+	 */
+	public void shutdown();
+}
@@ -0,0 +1,14 @@
+package graves.tim.powermanagement.server.batteries.manager.events.timers;
+
+public enum BatteryEventTimerType {
+	EXECUTOR, TIMING_WHEEL;
+
+	public static BatteryEventTimerType getByName(String timerTypeName) {
+		for (BatteryEventTimerType timerType : BatteryEventTimerType.values()) {
+			if (timerType.name().equalsIgnoreCase(timerTypeName)) {
+				return timerType;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,51 @@
+package graves.tim.powermanagement.server.batteries.manager.events.timers;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timer based on a single threaded ScheduledThreadPoolExecutor, note that
+ * cancelled tasks stay in the executors queue until their time would have come
+ */
+public class ExecutorBatteryEventTimer implements BatteryEventTimer {
+	private ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+
+	@Override
+	public ScheduledEventHandle schedule(Runnable task, long delay, TimeUnit unit) {
+		return new ScheduledFutureHandle(executor.schedule(task, delay, unit));
+	}
+
+	@Override
+	public int getPendingTasks() {
+		return executor.getQueue().size();
+	}
+
+	@Override
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	private static class ScheduledFutureHandle implements ScheduledEventHandle {
+		private final ScheduledFuture<?> future;
+
+		private ScheduledFutureHandle(ScheduledFuture<?> future) {
+			this.future = future;
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			return future.cancel(mayInterruptIfRunning);
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return future.isCancelled();
+		}
+
+		@Override
+		public boolean isDone() {
+			return future.isDone();
+		}
+	}
+}
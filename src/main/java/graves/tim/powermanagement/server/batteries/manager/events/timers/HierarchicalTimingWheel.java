@@ -0,0 +1,155 @@
+package graves.tim.powermanagement.server.batteries.manager.events.timers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import lombok.extern.java.Log;
+
+/**
+ * A hierarchical timing wheel (see Varghese and Lauck "Hashed and Hierarchical
+ * Timing Wheels"). Time is divided into ticks, level 0 has one slot per tick,
+ * each slot in level 1 covers a whole rotation of level 0 and so on. A task is
+ * put in the lowest level that can hold it's deadline, and as the clock
+ * reaches a higher level slot the tasks in it are moved down into the lower
+ * levels until they end up in level 0 and expire.
+ *
+ * Adding and cancelling a task are both constant time, and a cancelled task is
+ * unlinked from the wheel straight away so memory use only depends on the
+ * number of tasks that are actually waiting to run.
+ */
+@Log
+public class HierarchicalTimingWheel implements BatteryEventTimer {
+	public final static int SLOT_BITS = 6;
+	public final static int SLOTS_PER_LEVEL = 1 << SLOT_BITS;
+	private final static int SLOT_MASK = SLOTS_PER_LEVEL - 1;
+	// with a 10 milli second tick 6 levels of 64 slots covers about 21 years
+	public final static int LEVELS = 6;
+	private final TimingWheelSlot[][] levels = new TimingWheelSlot[LEVELS][SLOTS_PER_LEVEL];
+	private final ReentrantLock lock = new ReentrantLock();
+	private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor();
+	private final long tickNanos;
+	private final long startNanos;
+	// the last tick which has been processed, only changed by the ticker thread
+	// while holding the lock
+	private long currentTick = 0;
+	private int pendingTasks = 0;
+
+	public HierarchicalTimingWheel(long tickMillis) {
+		this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+		for (int level = 0; level < LEVELS; level++) {
+			for (int slot = 0; slot < SLOTS_PER_LEVEL; slot++) {
+				levels[level][slot] = new TimingWheelSlot();
+			}
+		}
+		startNanos = System.nanoTime();
+		ticker.scheduleAtFixedRate(this::advanceClock, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+		log.info("Timing wheel started with a tick of " + tickMillis + " milli seconds");
+	}
+
+	@Override
+	public ScheduledEventHandle schedule(Runnable task, long delay, TimeUnit unit) {
+		long delayNanos = Math.max(0, unit.toNanos(delay));
+		long elapsedNanos = System.nanoTime() - startNanos + delayNanos;
+		// round up, it's better to run a little late than early
+		long deadlineTick = (elapsedNanos + tickNanos - 1) / tickNanos;
+		lock.lock();
+		try {
+			// anything that's due now (or was due in the past) runs on the next tick
+			TimingWheelEntry entry = new TimingWheelEntry(this, task, Math.max(deadlineTick, currentTick + 1));
+			place(entry, null);
+			pendingTasks++;
+			return entry;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int getPendingTasks() {
+		lock.lock();
+		try {
+			return pendingTasks;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void shutdown() {
+		ticker.shutdownNow();
+		log.info("Timing wheel stopped with " + getPendingTasks() + " tasks still pending");
+	}
+
+	boolean cancel(TimingWheelEntry entry) {
+		lock.lock();
+		try {
+			if (entry.slot == null) {
+				// it's already been expired or cancelled
+				return false;
+			}
+			entry.slot.remove(entry);
+			entry.markCancelled();
+			pendingTasks--;
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	// put the entry into the lowest level that can hold it, or if it's now due add
+	// it to the expired list
+	private void place(TimingWheelEntry entry, List<TimingWheelEntry> expired) {
+		long ticksRemaining = entry.deadlineTick - currentTick;
+		if (ticksRemaining <= 0) {
+			expired.add(entry);
+			return;
+		}
+		int level = 0;
+		while ((level < LEVELS - 1) && (ticksRemaining >= (1L << (SLOT_BITS * (level + 1))))) {
+			level++;
+		}
+		int slot = (int) ((entry.deadlineTick >>> (SLOT_BITS * level)) & SLOT_MASK);
+		levels[level][slot].add(entry);
+	}
+
+	private void advanceClock() {
+		List<TimingWheelEntry> expired = new ArrayList<>();
+		long targetTick = (System.nanoTime() - startNanos) / tickNanos;
+		lock.lock();
+		try {
+			// if the ticker thread was held up for some reason catch up tick by tick
+			while (currentTick < targetTick) {
+				currentTick++;
+				// work out how many of the higher levels have just moved on to a new slot
+				int topLevel = 0;
+				while ((topLevel < LEVELS - 1) && ((currentTick & ((1L << (SLOT_BITS * (topLevel + 1))) - 1)) == 0)) {
+					topLevel++;
+				}
+				// move their contents down, highest level first so entries can drop through
+				// more than one level in one go
+				for (int level = topLevel; level > 0; level--) {
+					int slot = (int) ((currentTick >>> (SLOT_BITS * level)) & SLOT_MASK);
+					levels[level][slot].drain(entry -> place(entry, expired));
+				}
+				levels[0][(int) (currentTick & SLOT_MASK)].drain(entry -> place(entry, expired));
+			}
+			pendingTasks -= expired.size();
+		} finally {
+			lock.unlock();
+		}
+		// run the tasks outside the lock so they can schedule new things
+		for (TimingWheelEntry entry : expired) {
+			entry.markExpired();
+			try {
+				entry.task.run();
+			} catch (RuntimeException e) {
+				log.warning("Problem running timing wheel task " + entry + " problem is " + e.getLocalizedMessage());
+				e.printStackTrace();
+			}
+		}
+	}
+}
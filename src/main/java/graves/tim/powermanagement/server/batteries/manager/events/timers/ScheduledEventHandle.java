@@ -0,0 +1,21 @@
+package graves.tim.powermanagement.server.batteries.manager.events.timers;
+
+/**
+ * Returned by a BatteryEventTimer when something is scheduled, lets the
+ * scheduled task be cancelled before it runs
+ */
+public interface ScheduledEventHandle {
+	/**
+	 * Stop the task from running if it has not already started
+	 * 
+	 * @param mayInterruptIfRunning if the timer supports it interrupt the task if
+	 *                              it's already running
+	 * @return true if the task was cancelled, false if it had already run or been
+	 *         cancelled
+	 */
+	public boolean cancel(boolean mayInterruptIfRunning);
+
+	public boolean isCancelled();
+
+	public boolean isDone();
+}
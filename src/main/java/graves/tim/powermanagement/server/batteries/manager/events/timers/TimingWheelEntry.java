@@ -0,0 +1,55 @@
+package graves.tim.powermanagement.server.batteries.manager.events.timers;
+
+/**
+ * A task waiting in the timing wheel, this is also the link in the doubly
+ * linked list of the slot it's in so it can be removed from the wheel in
+ * constant time when it's cancelled
+ */
+class TimingWheelEntry implements ScheduledEventHandle {
+	private final HierarchicalTimingWheel wheel;
+	final Runnable task;
+	final long deadlineTick;
+	// these are only ever changed while holding the wheels lock
+	TimingWheelSlot slot;
+	TimingWheelEntry previous;
+	TimingWheelEntry next;
+	private volatile boolean cancelled = false;
+	private volatile boolean expired = false;
+
+	TimingWheelEntry(HierarchicalTimingWheel wheel, Runnable task, long deadlineTick) {
+		this.wheel = wheel;
+		this.task = task;
+		this.deadlineTick = deadlineTick;
+	}
+
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		// the wheel hands the task off as soon as it expires so there is nothing to
+		// interrupt
+		return wheel.cancel(this);
+	}
+
+	@Override
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	@Override
+	public boolean isDone() {
+		return cancelled || expired;
+	}
+
+	void markCancelled() {
+		cancelled = true;
+	}
+
+	void markExpired() {
+		expired = true;
+	}
+
+	@Override
+	public String toString() {
+		return "TimingWheelEntry(deadlineTick=" + deadlineTick + ", cancelled=" + cancelled + ", expired=" + expired
+				+ ")";
+	}
+}
@@ -0,0 +1,51 @@
+package graves.tim.powermanagement.server.batteries.manager.events.timers;
+
+import java.util.function.Consumer;
+
+/**
+ * One slot in a timing wheel level, a doubly linked list of the entries that
+ * are due in the time range the slot covers. None of this is thread safe, the
+ * wheel only calls it while holding it's lock
+ */
+class TimingWheelSlot {
+	private TimingWheelEntry head;
+
+	void add(TimingWheelEntry entry) {
+		entry.slot = this;
+		entry.previous = null;
+		entry.next = head;
+		if (head != null) {
+			head.previous = entry;
+		}
+		head = entry;
+	}
+
+	void remove(TimingWheelEntry entry) {
+		if (entry.previous == null) {
+			head = entry.next;
+		} else {
+			entry.previous.next = entry.next;
+		}
+		if (entry.next != null) {
+			entry.next.previous = entry.previous;
+		}
+		entry.slot = null;
+		entry.previous = null;
+		entry.next = null;
+	}
+
+	// empties the slot, handing each of the entries that were in it to the
+	// consumer
+	void drain(Consumer<TimingWheelEntry> consumer) {
+		TimingWheelEntry entry = head;
+		head = null;
+		while (entry != null) {
+			TimingWheelEntry next = entry.next;
+			entry.slot = null;
+			entry.previous = null;
+			entry.next = null;
+			consumer.accept(entry);
+			entry = next;
+		}
+	}
+}
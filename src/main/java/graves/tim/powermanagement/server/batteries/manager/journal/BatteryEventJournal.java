@@ -0,0 +1,328 @@
+package graves.tim.powermanagement.server.batteries.manager.journal;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import graves.tim.powermanagement.common.data.BatteryEvent;
+import io.helidon.config.Config;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import lombok.extern.java.Log;
+
+/**
+ * Append only journal of the changes to the scheduled events, one JSON record
+ * per line. Records are queued by the caller and written by a single writer
+ * thread which syncs them to disk in batches, so adding an event does not have
+ * to wait for the disk. The journal is replayed on startup to rebuild the
+ * scheduled events and is periodically compacted by re-writing it with just the
+ * events which are still live.
+ */
+@Log
+@ApplicationScoped
+public class BatteryEventJournal {
+	public final static String JOURNAL_CONFIG_TREE_NAME = "journal";
+	public final static String JOURNAL_ENABLED = "enabled";
+	public final static boolean JOURNAL_ENABLED_DEFAULT = true;
+	public final static String JOURNAL_DIRECTORY = "directory";
+	public final static String JOURNAL_DIRECTORY_DEFAULT = "saved-data" + File.separator + "journal";
+	public final static String JOURNAL_FILE_NAME = "battery-events.journal";
+	public final static String JOURNAL_FSYNC_INTERVAL_MILLIS = "fsyncIntervalMillis";
+	public final static long JOURNAL_FSYNC_INTERVAL_MILLIS_DEFAULT = 100;
+	public final static String JOURNAL_COMPACTION_INTERVAL_MINUTES = "compactionIntervalMinutes";
+	public final static long JOURNAL_COMPACTION_INTERVAL_MINUTES_DEFAULT = 60;
+	public final static String JOURNAL_COMPACTION_MINIMUM_RECORDS = "compactionMinimumRecords";
+	public final static long JOURNAL_COMPACTION_MINIMUM_RECORDS_DEFAULT = 1000;
+	private final ObjectMapper mapper = new ObjectMapper().registerModule(new JavaTimeModule())
+			.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+			.disable(DeserializationFeature.ADJUST_DATES_TO_CONTEXT_TIME_ZONE)
+			.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+	private final boolean enabled;
+	private final Path journalPath;
+	private final long compactionMinimumRecords;
+	// the writer thread does all of the file operations, so there is no locking
+	// around the channel
+	private final ScheduledExecutorService journalWriter = Executors.newSingleThreadScheduledExecutor();
+	private final Queue<String> pendingRecords = new ConcurrentLinkedQueue<>();
+	// the latest ADD or RESCHEDULE record for every live event, this is what
+	// compaction writes out
+	private final Map<Long, BatteryEventJournalRecord> liveEvents = new ConcurrentHashMap<>();
+	// records come from the scheduler and the REST threads, the live set and the
+	// queue are updated together under this so the file gets the records in the
+	// same order as the live set saw them
+	private final ReentrantLock appendLock = new ReentrantLock();
+	private FileChannel journalChannel;
+	private long recordsSinceCompaction = 0;
+
+	@Inject
+	public BatteryEventJournal(Config config) {
+		Config journalConfig = config.get(JOURNAL_CONFIG_TREE_NAME);
+		enabled = journalConfig.get(JOURNAL_ENABLED).asBoolean().orElse(JOURNAL_ENABLED_DEFAULT);
+		journalPath = Path.of(journalConfig.get(JOURNAL_DIRECTORY).asString().orElse(JOURNAL_DIRECTORY_DEFAULT),
+				JOURNAL_FILE_NAME);
+		compactionMinimumRecords = journalConfig.get(JOURNAL_COMPACTION_MINIMUM_RECORDS).asLong()
+				.orElse(JOURNAL_COMPACTION_MINIMUM_RECORDS_DEFAULT);
+		if (!enabled) {
+			log.info("Event journal is disabled, scheduled events will not survive a restart");
+			return;
+		}
+		long fsyncIntervalMillis = journalConfig.get(JOURNAL_FSYNC_INTERVAL_MILLIS).asLong()
+				.orElse(JOURNAL_FSYNC_INTERVAL_MILLIS_DEFAULT);
+		long compactionIntervalMinutes = journalConfig.get(JOURNAL_COMPACTION_INTERVAL_MINUTES).asLong()
+				.orElse(JOURNAL_COMPACTION_INTERVAL_MINUTES_DEFAULT);
+		journalWriter.scheduleWithFixedDelay(this::flush, fsyncIntervalMillis, fsyncIntervalMillis,
+				TimeUnit.MILLISECONDS);
+		journalWriter.scheduleWithFixedDelay(this::compactIfNeeded, compactionIntervalMinutes,
+				compactionIntervalMinutes, TimeUnit.MINUTES);
+		log.info("Event journal is " + journalPath + " syncing every " + fsyncIntervalMillis + " milli seconds");
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void recordAdd(String batteryName, BatteryEvent batteryEvent) {
+		append(BatteryEventJournalRecordType.ADD, batteryName, batteryEvent.getEventId(), copyOf(batteryEvent));
+	}
+
+	// a repeating event has moved on, record the new planned time (and as the
+	// repeat rule counts down the repeats remaining)
+	public void recordReschedule(String batteryName, BatteryEvent batteryEvent, ZonedDateTime nextPlannedStartTime) {
+		BatteryEvent rescheduledEvent = copyOf(batteryEvent);
+		if (rescheduledEvent != null) {
+			rescheduledEvent.applyPlannedStartTime(nextPlannedStartTime);
+		}
+		append(BatteryEventJournalRecordType.RESCHEDULE, batteryName, batteryEvent.getEventId(), rescheduledEvent);
+	}
+
+	public void recordDelete(String batteryName, long eventId) {
+		append(BatteryEventJournalRecordType.DELETE, batteryName, eventId, null);
+	}
+
+	public void recordComplete(String batteryName, long eventId) {
+		append(BatteryEventJournalRecordType.COMPLETE, batteryName, eventId, null);
+	}
+
+	private void append(BatteryEventJournalRecordType recordType, String batteryName, long eventId,
+			BatteryEvent batteryEvent) {
+		if (!enabled) {
+			return;
+		}
+		BatteryEventJournalRecord record = BatteryEventJournalRecord.builder().recordType(recordType)
+				.recordTime(ZonedDateTime.now()).batteryName(batteryName).eventId(eventId).batteryEvent(batteryEvent)
+				.build();
+		String line;
+		try {
+			line = mapper.writeValueAsString(record);
+		} catch (JsonProcessingException e) {
+			log.severe("Unable to serialize journal record " + record + " because " + e.getLocalizedMessage());
+			return;
+		}
+		// update the live set before queueing the record, that way if a compaction
+		// happens in between the worst case is the record is in the compacted journal
+		// and is then written again, replaying a record twice gives the same result
+		appendLock.lock();
+		try {
+			if (recordType.isEventLive()) {
+				liveEvents.put(eventId, record);
+			} else {
+				liveEvents.remove(eventId);
+			}
+			pendingRecords.add(line);
+		} finally {
+			appendLock.unlock();
+		}
+	}
+
+	// the copy means later changes to the live event (e.g. the repeat rule
+	// counting down) don't change what we think we recorded
+	private BatteryEvent copyOf(BatteryEvent batteryEvent) {
+		try {
+			return mapper.readValue(mapper.writeValueAsString(batteryEvent), BatteryEvent.class);
+		} catch (JsonProcessingException e) {
+			log.severe("Unable to copy battery event " + batteryEvent + " for the journal because "
+					+ e.getLocalizedMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Reads the journal and returns the records for the events which were live
+	 * when it was last written, in the order they were originally added. This
+	 * also resets the live set, the caller is expected to re-add the events it
+	 * manages to re-schedule and then call compact
+	 */
+	public Collection<BatteryEventJournalRecord> replay() {
+		Map<Long, BatteryEventJournalRecord> replayedEvents = new LinkedHashMap<>();
+		liveEvents.clear();
+		if (!enabled || !Files.exists(journalPath)) {
+			return replayedEvents.values();
+		}
+		int recordCount = 0;
+		try (BufferedReader reader = Files.newBufferedReader(journalPath, StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.isBlank()) {
+					continue;
+				}
+				BatteryEventJournalRecord record;
+				try {
+					record = mapper.readValue(line, BatteryEventJournalRecord.class);
+				} catch (JsonProcessingException e) {
+					// most likely the last line was only partly written when we stopped
+					log.warning("Skipping unreadable journal record " + line + " because " + e.getLocalizedMessage());
+					continue;
+				}
+				recordCount++;
+				if (record.getRecordType().isEventLive() && (record.getBatteryEvent() != null)) {
+					replayedEvents.put(record.getEventId(), record);
+				} else {
+					replayedEvents.remove(record.getEventId());
+				}
+			}
+		} catch (IOException e) {
+			log.severe("Problem reading the event journal " + journalPath + " because " + e.getLocalizedMessage());
+		}
+		log.info("Replayed " + recordCount + " journal records, " + replayedEvents.size() + " events are live");
+		return replayedEvents.values();
+	}
+
+	// waits for the compaction as it's normally called once the replayed events
+	// have been re-added and we want the journal to reflect that before carrying on
+	public void compact() {
+		if (!enabled) {
+			return;
+		}
+		try {
+			journalWriter.submit(this::compactJournal).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			log.severe("Problem compacting the event journal because " + e.getCause().getLocalizedMessage());
+		}
+	}
+
+	private void compactIfNeeded() {
+		// only bother if the journal has grown a lot compared to what's actually live
+		if ((recordsSinceCompaction > compactionMinimumRecords) && (recordsSinceCompaction > liveEvents.size())) {
+			compactJournal();
+		}
+	}
+
+	// only called on the writer thread
+	private void compactJournal() {
+		flush();
+		Path compactedPath = journalPath.resolveSibling(JOURNAL_FILE_NAME + ".compacting");
+		List<String> lines = new ArrayList<>();
+		for (BatteryEventJournalRecord record : liveEvents.values()) {
+			try {
+				lines.add(mapper.writeValueAsString(record));
+			} catch (JsonProcessingException e) {
+				log.severe("Unable to serialize journal record " + record + " during compaction because "
+						+ e.getLocalizedMessage());
+			}
+		}
+		try {
+			Files.createDirectories(journalPath.getParent());
+		} catch (IOException e) {
+			log.severe("Problem creating the journal directory because " + e.getLocalizedMessage());
+			return;
+		}
+		try (FileChannel compactedChannel = FileChannel.open(compactedPath, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			write(compactedChannel, lines);
+			compactedChannel.force(true);
+		} catch (IOException e) {
+			log.severe("Problem writing compacted journal " + compactedPath + " because " + e.getLocalizedMessage());
+			return;
+		}
+		try {
+			closeJournalChannel();
+			Files.move(compactedPath, journalPath, StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			recordsSinceCompaction = 0;
+			log.info("Compacted event journal to " + lines.size() + " records");
+		} catch (IOException e) {
+			log.severe("Problem replacing the journal with the compacted version because " + e.getLocalizedMessage());
+		}
+	}
+
+	// only called on the writer thread, writes everything that's been queued and
+	// then syncs it to disk in one go
+	private void flush() {
+		List<String> lines = new ArrayList<>();
+		String line;
+		while ((line = pendingRecords.poll()) != null) {
+			lines.add(line);
+		}
+		if (lines.isEmpty()) {
+			return;
+		}
+		try {
+			FileChannel channel = getJournalChannel();
+			write(channel, lines);
+			channel.force(false);
+			recordsSinceCompaction += lines.size();
+		} catch (IOException e) {
+			log.severe("Problem writing " + lines.size() + " records to the event journal because "
+					+ e.getLocalizedMessage());
+			closeJournalChannel();
+		}
+	}
+
+	private void write(FileChannel channel, List<String> lines) throws IOException {
+		StringBuilder batch = new StringBuilder();
+		lines.forEach(line -> batch.append(line).append('\n'));
+		ByteBuffer buffer = ByteBuffer.wrap(batch.toString().getBytes(StandardCharsets.UTF_8));
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	private FileChannel getJournalChannel() throws IOException {
+		if (journalChannel == null) {
+			Files.createDirectories(journalPath.getParent());
+			journalChannel = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.APPEND);
+		}
+		return journalChannel;
+	}
+
+	private void closeJournalChannel() {
+		if (journalChannel != null) {
+			try {
+				journalChannel.close();
+			} catch (IOException e) {
+				log.warning("Problem closing the event journal because " + e.getLocalizedMessage());
+			}
+			journalChannel = null;
+		}
+	}
+}
@@ -0,0 +1,26 @@
+package graves.tim.powermanagement.server.batteries.manager.journal;
+
+import java.time.ZonedDateTime;
+
+import graves.tim.powermanagement.common.data.BatteryEvent;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A single line in the journal, for ADD and RESCHEDULE records the battery
+ * event is a copy of the event as it was when the record was written so
+ * replaying it gives the current planned start time and repeats remaining
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatteryEventJournalRecord {
+	private BatteryEventJournalRecordType recordType;
+	private ZonedDateTime recordTime;
+	private String batteryName;
+	private long eventId;
+	private BatteryEvent batteryEvent;
+}
@@ -0,0 +1,23 @@
+package graves.tim.powermanagement.server.batteries.manager.journal;
+
+/**
+ * The changes to the set of scheduled events which are recorded in the journal
+ *
+ * ADD - a new event has been accepted and scheduled
+ *
+ * RESCHEDULE - a repeating event has rolled forward to it's next planned start
+ * time
+ *
+ * DELETE - the event was deleted by a user
+ *
+ * COMPLETE - the event has finished (no more repeats or it failed) and was
+ * removed by the scheduler
+ */
+public enum BatteryEventJournalRecordType {
+	ADD, RESCHEDULE, DELETE, COMPLETE;
+
+	// ADD and RESCHEDULE leave the event live, the others remove it
+	public boolean isEventLive() {
+		return (this == ADD) || (this == RESCHEDULE);
+	}
+}
@@ -0,0 +1,29 @@
+package graves.tim.powermanagement.server.batteries.manager.telemetry;
+
+/**
+ * The numeric values the telemetry poller keeps for each sample, along with
+ * the name the battery uses for them in it's latest data / status
+ */
+public enum BatteryTelemetryField {
+	CHARGE_LEVEL("USOC"), CONSUMPTION_WATTS("Consumption_W"), PRODUCTION_WATTS("Production_W"),
+	GRID_FEED_IN_WATTS("GridFeedIn_W"), BATTERY_POWER_WATTS("Pac_total_W");
+
+	private final String telemetryName;
+
+	private BatteryTelemetryField(String telemetryName) {
+		this.telemetryName = telemetryName;
+	}
+
+	public String getTelemetryName() {
+		return telemetryName;
+	}
+
+	public static BatteryTelemetryField getByName(String fieldName) {
+		for (BatteryTelemetryField field : BatteryTelemetryField.values()) {
+			if (field.name().equalsIgnoreCase(fieldName)) {
+				return field;
+			}
+		}
+		return null;
+	}
+}
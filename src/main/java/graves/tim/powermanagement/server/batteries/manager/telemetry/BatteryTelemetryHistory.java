@@ -0,0 +1,132 @@
+package graves.tim.powermanagement.server.batteries.manager.telemetry;
+
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.OptionalInt;
+
+import lombok.Getter;
+
+/**
+ * A fixed size ring buffer of telemetry samples for a battery. Everything is
+ * allocated up front in primitive arrays, one for the sample times and one for
+ * the values (laid out sample by sample with a slot for each
+ * BatteryTelemetryField) so recording a sample doesn't allocate anything.
+ *
+ * There must only be one thread recording at a time (the poller makes sure of
+ * this), any number of threads can read. Samples are written and then
+ * published by updating the volatile count, readers check the count again
+ * after reading and retry if the writer has come round and started to reuse
+ * the slot they were reading. The reads of the arrays are plain reads so
+ * there's a fence before the count is checked again, otherwise they could be
+ * reordered after it (this is the same as StampedLock.validate does), and the
+ * writer has one so it's writes to a reused slot can't get ahead of the count
+ * it published last time.
+ *
+ * A missing value is held as NaN
+ */
+public class BatteryTelemetryHistory {
+	public final static int MINIMUM_CAPACITY = 2;
+	private final static int FIELD_COUNT = BatteryTelemetryField.values().length;
+	@Getter
+	private final String batteryName;
+	@Getter
+	private final int capacity;
+	// a sample older than this is too old to be used instead of asking the battery
+	@Getter
+	private final long maxSampleAgeMillis;
+	private final long[] timestamps;
+	private final double[] values;
+	private volatile long samplesRecorded = 0;
+
+	public BatteryTelemetryHistory(String batteryName, int capacity, long maxSampleAgeMillis) {
+		this.batteryName = batteryName;
+		this.capacity = Math.max(capacity, MINIMUM_CAPACITY);
+		this.maxSampleAgeMillis = maxSampleAgeMillis;
+		this.timestamps = new long[this.capacity];
+		this.values = new double[this.capacity * FIELD_COUNT];
+		Arrays.fill(values, Double.NaN);
+	}
+
+	// fieldValues is indexed by the BatteryTelemetryField ordinal
+	public void record(long timestampMillis, double[] fieldValues) {
+		long recorded = samplesRecorded;
+		VarHandle.storeStoreFence();
+		int slot = (int) (recorded % capacity);
+		timestamps[slot] = timestampMillis;
+		System.arraycopy(fieldValues, 0, values, slot * FIELD_COUNT, FIELD_COUNT);
+		samplesRecorded = recorded + 1;
+	}
+
+	public long getSamplesRecorded() {
+		return samplesRecorded;
+	}
+
+	public int size() {
+		return (int) Math.min(samplesRecorded, capacity);
+	}
+
+	public boolean hasSamples() {
+		return samplesRecorded > 0;
+	}
+
+	// -1 if there are no samples
+	public long latestTimestamp() {
+		while (true) {
+			long recorded = samplesRecorded;
+			if (recorded == 0) {
+				return -1;
+			}
+			long timestamp = timestamps[slotFor(recorded)];
+			if (stillValid(recorded)) {
+				return timestamp;
+			}
+		}
+	}
+
+	// NaN if there are no samples or the battery didn't report this value
+	public double latest(BatteryTelemetryField field) {
+		while (true) {
+			long recorded = samplesRecorded;
+			if (recorded == 0) {
+				return Double.NaN;
+			}
+			double value = values[slotFor(recorded) * FIELD_COUNT + field.ordinal()];
+			if (stillValid(recorded)) {
+				return value;
+			}
+		}
+	}
+
+	// the charge level from the latest sample, as long as it's not too old
+	public OptionalInt recentChargeLevel() {
+		while (true) {
+			long recorded = samplesRecorded;
+			if (recorded == 0) {
+				return OptionalInt.empty();
+			}
+			int slot = slotFor(recorded);
+			long timestamp = timestamps[slot];
+			double chargeLevel = values[slot * FIELD_COUNT + BatteryTelemetryField.CHARGE_LEVEL.ordinal()];
+			if (!stillValid(recorded)) {
+				continue;
+			}
+			if (Double.isNaN(chargeLevel) || ((System.currentTimeMillis() - timestamp) > maxSampleAgeMillis)) {
+				return OptionalInt.empty();
+			}
+			return OptionalInt.of((int) Math.round(chargeLevel));
+		}
+	}
+
+	private int slotFor(long recorded) {
+		return (int) ((recorded - 1) % capacity);
+	}
+
+	// the writer only touches the slot of sample recorded + capacity - 1 once it's
+	// published recorded + capacity - 2 samples, if it's not got that far the slot
+	// we read is intact. The fence makes sure our reads of the slot are done
+	// before we look at the count again
+	private boolean stillValid(long recorded) {
+		VarHandle.acquireFence();
+		return (samplesRecorded - recorded) < (capacity - 1);
+	}
+}
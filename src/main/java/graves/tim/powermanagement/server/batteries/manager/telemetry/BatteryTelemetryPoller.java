@@ -0,0 +1,219 @@
+package graves.tim.powermanagement.server.batteries.manager.telemetry;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Tag;
+
+import graves.tim.powermanagement.server.batteries.BatteryCompletionStages;
+import graves.tim.powermanagement.server.batteries.GenericBattery;
+import graves.tim.powermanagement.server.batteries.batteryimplementations.BatteryTelemetryCache;
+import graves.tim.powermanagement.server.batteries.manager.BatteryData;
+import io.helidon.config.Config;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.json.JsonNumber;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonValue;
+import lombok.Getter;
+import lombok.extern.java.Log;
+
+/**
+ * Samples the latest data and status of each battery in the background and
+ * records the numbers in the batteries telemetry history, so things that just
+ * want the current state (e.g. the charge level) can read the last sample
+ * rather than going to the battery. The power meter isn't polled, none of the
+ * history comes from it so it's only fetched when something asks for it.
+ *
+ * The calls are made with fresh set so they also refresh the batteries
+ * telemetry cache. Each poll also has the battery re-read any configuration
+ * settings it's remembering that are getting old, so they don't expire in the
+ * (usually long) gaps between the events that use them. If a battery is still working on the previous poll when the
+ * next one is due it's skipped this time round, that also means there is only
+ * ever one thread recording into the history of a battery.
+ */
+@Log
+@ApplicationScoped
+public class BatteryTelemetryPoller {
+	public final static String TELEMETRY_POLLER_CONFIG_TREE_NAME = "telemetryPoller";
+	public final static String POLLER_ENABLED = "enabled";
+	public final static boolean POLLER_ENABLED_DEFAULT = true;
+	public final static String POLL_INTERVAL_MILLIS = "intervalMillis";
+	public final static long POLL_INTERVAL_MILLIS_DEFAULT = 10000;
+	public final static String HISTORY_SIZE = "historySize";
+	public final static int HISTORY_SIZE_DEFAULT = 360;
+	// by default a sample can be used until two polls have been missed
+	public final static String MAX_SAMPLE_AGE_MILLIS = "maxSampleAgeMillis";
+	public final static String BATTERY_TAG_NAME = "battery";
+	public final static String POLLS = "batteryTelemetryPolls";
+	public final static String POLL_FAILURES = "batteryTelemetryPollFailures";
+	public final static String POLLS_SKIPPED = "batteryTelemetryPollsSkipped";
+	public final static String LAST_SAMPLE_AGE_MILLIS = "batteryTelemetryLastSampleAgeMillis";
+	@Getter
+	private final boolean enabled;
+	private final long pollIntervalMillis;
+	private final int historySize;
+	private final long maxSampleAgeMillis;
+	private final List<PolledBattery> polledBatteries = new ArrayList<>();
+	private ScheduledExecutorService pollTimer;
+	@Inject
+	private MetricRegistry metricRegistry;
+
+	@Inject
+	public BatteryTelemetryPoller(Config config) {
+		Config pollerConfig = config.get(TELEMETRY_POLLER_CONFIG_TREE_NAME);
+		enabled = pollerConfig.get(POLLER_ENABLED).asBoolean().orElse(POLLER_ENABLED_DEFAULT);
+		pollIntervalMillis = pollerConfig.get(POLL_INTERVAL_MILLIS).asLong().orElse(POLL_INTERVAL_MILLIS_DEFAULT);
+		historySize = pollerConfig.get(HISTORY_SIZE).asInt().orElse(HISTORY_SIZE_DEFAULT);
+		maxSampleAgeMillis = pollerConfig.get(MAX_SAMPLE_AGE_MILLIS).asLong().orElse(pollIntervalMillis * 2);
+		log.info("Telemetry poller enabled is " + enabled + ", polling every " + pollIntervalMillis
+				+ "ms, keeping " + historySize + " samples, samples can be used for " + maxSampleAgeMillis + "ms");
+	}
+
+	// called once the batteries have been setup, the system battery has no
+	// telemetry so it's not polled
+	public void start(Collection<BatteryData> batteries) {
+		if (!enabled) {
+			return;
+		}
+		for (BatteryData batteryData : batteries) {
+			if (batteryData.systemBattery()) {
+				continue;
+			}
+			BatteryTelemetryHistory history = new BatteryTelemetryHistory(batteryData.getBatteryName(), historySize,
+					maxSampleAgeMillis);
+			batteryData.applyTelemetryHistory(history);
+			Tag batteryTag = new Tag(BATTERY_TAG_NAME, batteryData.getBatteryName());
+			PolledBattery polledBattery = new PolledBattery(batteryData, history,
+					metricRegistry.counter(POLLS, batteryTag), metricRegistry.counter(POLL_FAILURES, batteryTag),
+					metricRegistry.counter(POLLS_SKIPPED, batteryTag));
+			polledBatteries.add(polledBattery);
+			metricRegistry.gauge(LAST_SAMPLE_AGE_MILLIS, history, BatteryTelemetryPoller::lastSampleAgeMillis,
+					batteryTag);
+		}
+		if (polledBatteries.isEmpty()) {
+			return;
+		}
+		pollTimer = Executors.newSingleThreadScheduledExecutor();
+		pollTimer.scheduleAtFixedRate(this::pollBatteries, 0, pollIntervalMillis, TimeUnit.MILLISECONDS);
+		log.info("Started telemetry poller for " + polledBatteries.size() + " batteries");
+	}
+
+	@PreDestroy
+	private void stop() {
+		if (pollTimer != null) {
+			pollTimer.shutdownNow();
+			log.info("Stopped telemetry poller");
+		}
+	}
+
+	private static long lastSampleAgeMillis(BatteryTelemetryHistory history) {
+		long latestTimestamp = history.latestTimestamp();
+		return latestTimestamp < 0 ? -1 : System.currentTimeMillis() - latestTimestamp;
+	}
+
+	// this runs on the timer thread so it must not block, the calls are all async
+	private void pollBatteries() {
+		for (PolledBattery polledBattery : polledBatteries) {
+			try {
+				pollBattery(polledBattery);
+			} catch (RuntimeException e) {
+				// don't let one battery stop the timer for the others
+				polledBattery.getInProgress().set(false);
+				log.warning("Problem starting telemetry poll of battery "
+						+ polledBattery.getBatteryData().getBatteryName() + " problem is " + e.getLocalizedMessage());
+			}
+		}
+	}
+
+	private void pollBattery(PolledBattery polledBattery) {
+		if (!polledBattery.getInProgress().compareAndSet(false, true)) {
+			polledBattery.getPollsSkipped().inc();
+			return;
+		}
+		polledBattery.getPolls().inc();
+		GenericBattery battery = polledBattery.getBatteryData().retrieveBattery();
+		CompletableFuture<JsonObject> latestData = battery.retrieveLatestDataAsync(true).toCompletableFuture();
+		CompletableFuture<JsonObject> status = battery.retrieveStatusAsync(true).toCompletableFuture();
+		CompletableFuture<Void> configurationState = battery.refreshConfigurationStateAsync().toCompletableFuture();
+		CompletionStage<Void> allDone = CompletableFuture.allOf(latestData, status, configurationState);
+		allDone.whenComplete((result, problem) -> {
+			try {
+				// the latest data is what we need, if only the others failed we still have a
+				// sample
+				if (latestData.isCompletedExceptionally()) {
+					polledBattery.getPollFailures().inc();
+					log.warning("Telemetry poll of battery " + polledBattery.getBatteryData().getBatteryName()
+							+ " failed, problem is "
+							+ latestData.handle((data, latestDataProblem) -> BatteryCompletionStages
+									.unwrap(latestDataProblem).getLocalizedMessage()).join());
+				} else {
+					JsonObject latestDataSample = latestData.join();
+					// if the battery couldn't be reached the cache may have given us what it had
+					// from before, that's not a new sample
+					boolean stale = latestDataSample.getBoolean(BatteryTelemetryCache.STALE_FLAG, false);
+					if ((problem != null) || stale) {
+						polledBattery.getPollFailures().inc();
+					}
+					if (!stale) {
+						recordSample(polledBattery, latestDataSample,
+								status.isCompletedExceptionally() ? null : status.join());
+					}
+				}
+			} finally {
+				polledBattery.getInProgress().set(false);
+			}
+		});
+	}
+
+	private void recordSample(PolledBattery polledBattery, JsonObject latestData, JsonObject status) {
+		double[] sample = polledBattery.getSample();
+		for (BatteryTelemetryField field : BatteryTelemetryField.values()) {
+			double value = numericValue(latestData, field.getTelemetryName());
+			if (Double.isNaN(value) && (status != null)) {
+				value = numericValue(status, field.getTelemetryName());
+			}
+			sample[field.ordinal()] = value;
+		}
+		polledBattery.getHistory().record(System.currentTimeMillis(), sample);
+	}
+
+	private static double numericValue(JsonObject telemetry, String name) {
+		JsonValue value = telemetry.get(name);
+		if ((value == null) || (value.getValueType() != JsonValue.ValueType.NUMBER)) {
+			return Double.NaN;
+		}
+		return ((JsonNumber) value).doubleValue();
+	}
+
+	@Getter
+	private static class PolledBattery {
+		private final BatteryData batteryData;
+		private final BatteryTelemetryHistory history;
+		// only used by the thread holding inProgress, so the sample can be reused
+		private final double[] sample = new double[BatteryTelemetryField.values().length];
+		private final AtomicBoolean inProgress = new AtomicBoolean(false);
+		private final Counter polls;
+		private final Counter pollFailures;
+		private final Counter pollsSkipped;
+
+		private PolledBattery(BatteryData batteryData, BatteryTelemetryHistory history, Counter polls,
+				Counter pollFailures, Counter pollsSkipped) {
+			this.batteryData = batteryData;
+			this.history = history;
+			this.polls = polls;
+			this.pollFailures = pollFailures;
+			this.pollsSkipped = pollsSkipped;
+		}
+	}
+}
@@ -0,0 +1,229 @@
+package graves.tim.powermanagement.server.connectionsupport;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.microprofile.metrics.Counter;
+
+import io.helidon.config.Config;
+import jakarta.ws.rs.ProcessingException;
+import lombok.Getter;
+import lombok.extern.java.Log;
+
+/**
+ * Limits the number of requests that can be outstanding to a battery at any one
+ * time, the battery is a small embedded device and it doesn't take much to
+ * overwhelm it. A request which can't get a connection within the configured
+ * wait time fails straight away (with a ProcessingException, just like a
+ * connection failure) rather than queueing up behind a slow or rebooting
+ * battery and tying up yet another thread.
+ *
+ * The rest client is wrapped so every call goes through the pool, calls which
+ * return a CompletionStage hold their connection until the stage completes.
+ * They never block the calling thread waiting for a connection, if none is
+ * free they check again every little while on a delayed stage until the wait
+ * time runs out.
+ * The HTTP keep alive handling is done by the underlying connector, this just
+ * controls how many connections can be in use.
+ */
+@Log
+public class BatteryConnectionPool {
+	public final static String CONNECTION_POOL_SIZE = "connectionPoolSize";
+	public final static int CONNECTION_POOL_SIZE_DEFAULT = 4;
+	public final static String CONNECTION_POOL_WAIT_MILLIS = "connectionPoolWaitMillis";
+	public final static long CONNECTION_POOL_WAIT_MILLIS_DEFAULT = 2000;
+	// how often an async request that's waiting for a connection checks again
+	public final static long ASYNC_RETRY_MILLIS = 20;
+	@Getter
+	private final String batteryName;
+	@Getter
+	private final int poolSize;
+	private final long waitMillis;
+	private final Semaphore connections;
+	private final AtomicInteger activeConnections = new AtomicInteger(0);
+	private final AtomicInteger waitingRequests = new AtomicInteger(0);
+	// the running totals are metrics counters, these are set when the batteries
+	// metrics are registered, anything before that isn't counted
+	private volatile Counter acquiredConnections;
+	private volatile Counter rejectedRequests;
+	private volatile Counter handshakes;
+	private final AtomicLong lastWaitMillis = new AtomicLong(0);
+	private final AtomicLong maxWaitMillis = new AtomicLong(0);
+	private final AtomicLong totalWaitMillis = new AtomicLong(0);
+
+	public BatteryConnectionPool(String batteryName, Config batteryConfig) {
+		this.batteryName = batteryName;
+		this.poolSize = Math.max(1, batteryConfig.get(CONNECTION_POOL_SIZE).asInt().orElse(CONNECTION_POOL_SIZE_DEFAULT));
+		this.waitMillis = Math.max(0,
+				batteryConfig.get(CONNECTION_POOL_WAIT_MILLIS).asLong().orElse(CONNECTION_POOL_WAIT_MILLIS_DEFAULT));
+		this.connections = new Semaphore(poolSize, true);
+		log.info("Connection pool for battery " + batteryName + " has " + poolSize
+				+ " connections, requests will wait up to " + waitMillis + "ms for one");
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T> T wrap(Class<T> clientInterface, T client) {
+		return (T) Proxy.newProxyInstance(clientInterface.getClassLoader(), new Class<?>[] { clientInterface },
+				new PooledInvocationHandler(client));
+	}
+
+	public int getActiveConnections() {
+		return activeConnections.get();
+	}
+
+	public int getWaitingRequests() {
+		return waitingRequests.get();
+	}
+
+	public void useCounters(Counter acquiredConnections, Counter rejectedRequests, Counter handshakes) {
+		this.acquiredConnections = acquiredConnections;
+		this.rejectedRequests = rejectedRequests;
+		this.handshakes = handshakes;
+	}
+
+	public long getLastWaitMillis() {
+		return lastWaitMillis.get();
+	}
+
+	public long getMaxWaitMillis() {
+		return maxWaitMillis.get();
+	}
+
+	public long getAverageWaitMillis() {
+		Counter acquiredCounter = acquiredConnections;
+		long acquired = acquiredCounter == null ? 0 : acquiredCounter.getCount();
+		return acquired == 0 ? 0 : totalWaitMillis.get() / acquired;
+	}
+
+	public void recordHandshake() {
+		count(handshakes);
+	}
+
+	private static void count(Counter counter) {
+		if (counter != null) {
+			counter.inc();
+		}
+	}
+
+	private void acquire(String requestName) {
+		long startNanos = System.nanoTime();
+		boolean acquired;
+		waitingRequests.incrementAndGet();
+		try {
+			acquired = connections.tryAcquire(waitMillis, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ProcessingException(
+					"Interrupted waiting for a connection to battery " + batteryName + " for " + requestName, e);
+		} finally {
+			waitingRequests.decrementAndGet();
+		}
+		if (!acquired) {
+			throw noConnection(requestName);
+		}
+		recordAcquired(startNanos);
+	}
+
+	// the async version, the returned stage completes when we have a connection
+	// (or fails if none became free in time), it's already complete if there was
+	// one free to start with
+	private CompletableFuture<Void> acquireAsync(String requestName) {
+		CompletableFuture<Void> acquired = new CompletableFuture<>();
+		waitingRequests.incrementAndGet();
+		tryAcquireAsync(requestName, System.nanoTime(), acquired);
+		return acquired;
+	}
+
+	private void tryAcquireAsync(String requestName, long startNanos, CompletableFuture<Void> acquired) {
+		if (connections.tryAcquire()) {
+			waitingRequests.decrementAndGet();
+			recordAcquired(startNanos);
+			acquired.complete(null);
+			return;
+		}
+		long remainingMillis = waitMillis - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+		if (remainingMillis <= 0) {
+			waitingRequests.decrementAndGet();
+			acquired.completeExceptionally(noConnection(requestName));
+			return;
+		}
+		CompletableFuture.runAsync(() -> tryAcquireAsync(requestName, startNanos, acquired), CompletableFuture
+				.delayedExecutor(Math.min(ASYNC_RETRY_MILLIS, remainingMillis), TimeUnit.MILLISECONDS));
+	}
+
+	private ProcessingException noConnection(String requestName) {
+		count(rejectedRequests);
+		return new ProcessingException("No connection to battery " + batteryName + " became free within "
+				+ waitMillis + "ms for " + requestName + ", all " + poolSize + " are in use");
+	}
+
+	private void recordAcquired(long startNanos) {
+		long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+		lastWaitMillis.set(waited);
+		totalWaitMillis.addAndGet(waited);
+		maxWaitMillis.accumulateAndGet(waited, Math::max);
+		count(acquiredConnections);
+		activeConnections.incrementAndGet();
+	}
+
+	private void release() {
+		activeConnections.decrementAndGet();
+		connections.release();
+	}
+
+	private class PooledInvocationHandler implements InvocationHandler {
+		private final Object client;
+
+		private PooledInvocationHandler(Object client) {
+			this.client = client;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			if (method.getDeclaringClass() == Object.class) {
+				return method.invoke(client, args);
+			}
+			if (CompletionStage.class.isAssignableFrom(method.getReturnType())) {
+				// if a connection is free straight away this runs the call on this thread
+				return acquireAsync(method.getName()).thenCompose(acquired -> invokeAsync(method, args));
+			}
+			acquire(method.getName());
+			try {
+				return method.invoke(client, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			} finally {
+				release();
+			}
+		}
+
+		// only called once we have a connection
+		@SuppressWarnings("unchecked")
+		private CompletionStage<Object> invokeAsync(Method method, Object[] args) {
+			CompletionStage<Object> result;
+			try {
+				result = (CompletionStage<Object>) method.invoke(client, args);
+			} catch (InvocationTargetException e) {
+				release();
+				return CompletableFuture.failedFuture(e.getCause());
+			} catch (ReflectiveOperationException | RuntimeException e) {
+				release();
+				return CompletableFuture.failedFuture(e);
+			}
+			if (result == null) {
+				release();
+				return CompletableFuture.completedFuture(null);
+			}
+			// hang on to the connection until the response has arrived
+			return result.whenComplete((response, failure) -> release());
+		}
+	}
+}
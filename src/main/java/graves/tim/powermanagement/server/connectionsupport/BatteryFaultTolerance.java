@@ -0,0 +1,160 @@
+package graves.tim.powermanagement.server.connectionsupport;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+
+import io.helidon.config.Config;
+import io.helidon.faulttolerance.Bulkhead;
+import io.helidon.faulttolerance.BulkheadException;
+import io.helidon.faulttolerance.CircuitBreaker;
+import io.helidon.faulttolerance.CircuitBreakerOpenException;
+import jakarta.ws.rs.ClientErrorException;
+import lombok.Getter;
+import lombok.extern.java.Log;
+
+/**
+ * A circuit breaker and bulkhead for each battery using the Helidon fault
+ * tolerance handlers (the same ones behind the MicroProfile annotations, but
+ * the batteries aren't CDI beans so the annotations can't be used).
+ *
+ * When a battery is rebooting or has gone away the breaker opens and calls
+ * fail immediately with a CircuitBreakerOpenException instead of each one
+ * waiting for a timeout, after the delay a few calls are let through to see if
+ * the battery is back. The bulkhead stops a slow battery using up more than
+ * it's share of threads, calls beyond the limit are queued and once the queue
+ * is full they are rejected with a BulkheadException.
+ *
+ * Errors reported by the battery for a bad request (4xx) mean it's working so
+ * don't count against the breaker.
+ */
+@Log
+public class BatteryFaultTolerance {
+	public final static String CIRCUIT_BREAKER_VOLUME = "circuitBreakerVolume";
+	public final static int CIRCUIT_BREAKER_VOLUME_DEFAULT = 10;
+	public final static String CIRCUIT_BREAKER_ERROR_RATIO = "circuitBreakerErrorRatio";
+	public final static int CIRCUIT_BREAKER_ERROR_RATIO_DEFAULT = 60;
+	public final static String CIRCUIT_BREAKER_DELAY_MILLIS = "circuitBreakerDelayMillis";
+	public final static long CIRCUIT_BREAKER_DELAY_MILLIS_DEFAULT = 30000;
+	public final static String CIRCUIT_BREAKER_SUCCESS_THRESHOLD = "circuitBreakerSuccessThreshold";
+	public final static int CIRCUIT_BREAKER_SUCCESS_THRESHOLD_DEFAULT = 1;
+	public final static String BULKHEAD_LIMIT = "bulkheadLimit";
+	public final static int BULKHEAD_LIMIT_DEFAULT = 4;
+	public final static String BULKHEAD_QUEUE_LENGTH = "bulkheadQueueLength";
+	public final static int BULKHEAD_QUEUE_LENGTH_DEFAULT = 10;
+	@Getter
+	private final String batteryName;
+	private final CircuitBreaker circuitBreaker;
+	private final Bulkhead bulkhead;
+
+	public BatteryFaultTolerance(String batteryName, Config batteryConfig) {
+		this.batteryName = batteryName;
+		int volume = batteryConfig.get(CIRCUIT_BREAKER_VOLUME).asInt().orElse(CIRCUIT_BREAKER_VOLUME_DEFAULT);
+		int errorRatio = batteryConfig.get(CIRCUIT_BREAKER_ERROR_RATIO).asInt()
+				.orElse(CIRCUIT_BREAKER_ERROR_RATIO_DEFAULT);
+		long delayMillis = batteryConfig.get(CIRCUIT_BREAKER_DELAY_MILLIS).asLong()
+				.orElse(CIRCUIT_BREAKER_DELAY_MILLIS_DEFAULT);
+		int successThreshold = batteryConfig.get(CIRCUIT_BREAKER_SUCCESS_THRESHOLD).asInt()
+				.orElse(CIRCUIT_BREAKER_SUCCESS_THRESHOLD_DEFAULT);
+		int bulkheadLimit = batteryConfig.get(BULKHEAD_LIMIT).asInt().orElse(BULKHEAD_LIMIT_DEFAULT);
+		int bulkheadQueueLength = batteryConfig.get(BULKHEAD_QUEUE_LENGTH).asInt()
+				.orElse(BULKHEAD_QUEUE_LENGTH_DEFAULT);
+		circuitBreaker = CircuitBreaker.builder().name(batteryName + "-circuitbreaker").volume(volume)
+				.errorRatio(errorRatio).delay(Duration.ofMillis(delayMillis)).successThreshold(successThreshold)
+				.skipOn(ClientErrorException.class, BulkheadException.class).build();
+		bulkhead = Bulkhead.builder().name(batteryName + "-bulkhead").limit(bulkheadLimit)
+				.queueLength(bulkheadQueueLength).build();
+		log.info("Battery " + batteryName + " circuit breaker opens when " + errorRatio + "% of the last " + volume
+				+ " calls fail and stays open for " + delayMillis + "ms, the bulkhead allows " + bulkheadLimit
+				+ " concurrent calls with " + bulkheadQueueLength + " queued");
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T> T wrap(Class<T> clientInterface, T client) {
+		return (T) Proxy.newProxyInstance(clientInterface.getClassLoader(), new Class<?>[] { clientInterface },
+				new FaultTolerantInvocationHandler(client));
+	}
+
+	public CircuitBreaker.State getCircuitBreakerState() {
+		return circuitBreaker.state();
+	}
+
+	public boolean isCircuitOpen() {
+		return circuitBreaker.state() == CircuitBreaker.State.OPEN;
+	}
+
+	public Bulkhead.Stats getBulkheadStats() {
+		return bulkhead.stats();
+	}
+
+	// was this failure because we refused to make the call rather than the battery
+	// failing
+	public static boolean isRejection(Throwable failure) {
+		while ((failure instanceof CompletionException) || (failure instanceof ExecutionException)) {
+			if (failure.getCause() == null) {
+				break;
+			}
+			failure = failure.getCause();
+		}
+		return (failure instanceof CircuitBreakerOpenException) || (failure instanceof BulkheadException);
+	}
+
+	private <T> CompletionStage<T> invoke(CallSupplier<CompletionStage<T>> call) {
+		return circuitBreaker.invoke(() -> bulkhead.invoke(() -> {
+			try {
+				return call.get();
+			} catch (Throwable e) {
+				return CompletableFuture.failedFuture(e);
+			}
+		})).toStage();
+	}
+
+	@FunctionalInterface
+	private interface CallSupplier<T> {
+		public T get() throws Throwable;
+	}
+
+	private class FaultTolerantInvocationHandler implements InvocationHandler {
+		private final Object client;
+
+		private FaultTolerantInvocationHandler(Object client) {
+			this.client = client;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			if (method.getDeclaringClass() == Object.class) {
+				return method.invoke(client, args);
+			}
+			if (CompletionStage.class.isAssignableFrom(method.getReturnType())) {
+				return BatteryFaultTolerance.this.invoke(() -> (CompletionStage<?>) callClient(method, args));
+			}
+			// sync calls still go through the handlers, they just wait for the result
+			try {
+				return BatteryFaultTolerance.this
+						.invoke(() -> CompletableFuture.completedFuture(callClient(method, args))).toCompletableFuture()
+						.get();
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				while ((cause instanceof CompletionException) && (cause.getCause() != null)) {
+					cause = cause.getCause();
+				}
+				throw cause;
+			}
+		}
+
+		private Object callClient(Method method, Object[] args) throws Throwable {
+			try {
+				return method.invoke(client, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+	}
+}
@@ -0,0 +1,20 @@
+package graves.tim.powermanagement.server.connectionsupport;
+
+import java.io.IOException;
+
+import jakarta.ws.rs.client.ClientRequestContext;
+import jakarta.ws.rs.client.ClientRequestFilter;
+
+/**
+ * Asks for the connection to be closed after each request, used for batteries
+ * that don't cope well with connections being kept alive
+ */
+public class ConnectionCloseRequestFilter implements ClientRequestFilter {
+	public final static String CONNECTION_HEADER = "Connection";
+	public final static String CONNECTION_CLOSE = "close";
+
+	@Override
+	public void filter(ClientRequestContext requestContext) throws IOException {
+		requestContext.getHeaders().putSingle(CONNECTION_HEADER, CONNECTION_CLOSE);
+	}
+}
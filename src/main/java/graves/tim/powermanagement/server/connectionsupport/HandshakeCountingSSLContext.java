@@ -0,0 +1,134 @@
+package graves.tim.powermanagement.server.connectionsupport;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.security.KeyManagementException;
+import java.security.SecureRandom;
+
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLContextSpi;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLServerSocketFactory;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+
+/**
+ * Wraps an SSLContext so every completed TLS handshake on a client socket it
+ * creates is reported, a high handshake count relative to the number of
+ * requests means connections aren't being re-used
+ */
+public class HandshakeCountingSSLContext extends SSLContext {
+
+	public HandshakeCountingSSLContext(SSLContext delegate, Runnable handshakeListener) {
+		super(new HandshakeCountingSSLContextSpi(delegate, handshakeListener), delegate.getProvider(),
+				delegate.getProtocol());
+	}
+
+	private static class HandshakeCountingSSLContextSpi extends SSLContextSpi {
+		private final SSLContext delegate;
+		private final Runnable handshakeListener;
+
+		private HandshakeCountingSSLContextSpi(SSLContext delegate, Runnable handshakeListener) {
+			this.delegate = delegate;
+			this.handshakeListener = handshakeListener;
+		}
+
+		@Override
+		protected void engineInit(KeyManager[] keyManagers, TrustManager[] trustManagers, SecureRandom secureRandom)
+				throws KeyManagementException {
+			delegate.init(keyManagers, trustManagers, secureRandom);
+		}
+
+		@Override
+		protected SSLSocketFactory engineGetSocketFactory() {
+			return new HandshakeCountingSocketFactory(delegate.getSocketFactory(), handshakeListener);
+		}
+
+		@Override
+		protected SSLServerSocketFactory engineGetServerSocketFactory() {
+			return delegate.getServerSocketFactory();
+		}
+
+		@Override
+		protected SSLEngine engineCreateSSLEngine() {
+			return delegate.createSSLEngine();
+		}
+
+		@Override
+		protected SSLEngine engineCreateSSLEngine(String host, int port) {
+			return delegate.createSSLEngine(host, port);
+		}
+
+		@Override
+		protected SSLSessionContext engineGetServerSessionContext() {
+			return delegate.getServerSessionContext();
+		}
+
+		@Override
+		protected SSLSessionContext engineGetClientSessionContext() {
+			return delegate.getClientSessionContext();
+		}
+	}
+
+	private static class HandshakeCountingSocketFactory extends SSLSocketFactory {
+		private final SSLSocketFactory delegate;
+		private final Runnable handshakeListener;
+
+		private HandshakeCountingSocketFactory(SSLSocketFactory delegate, Runnable handshakeListener) {
+			this.delegate = delegate;
+			this.handshakeListener = handshakeListener;
+		}
+
+		private Socket listen(Socket socket) {
+			if (socket instanceof SSLSocket) {
+				((SSLSocket) socket).addHandshakeCompletedListener(event -> handshakeListener.run());
+			}
+			return socket;
+		}
+
+		@Override
+		public String[] getDefaultCipherSuites() {
+			return delegate.getDefaultCipherSuites();
+		}
+
+		@Override
+		public String[] getSupportedCipherSuites() {
+			return delegate.getSupportedCipherSuites();
+		}
+
+		@Override
+		public Socket createSocket() throws IOException {
+			return listen(delegate.createSocket());
+		}
+
+		@Override
+		public Socket createSocket(Socket socket, String host, int port, boolean autoClose) throws IOException {
+			return listen(delegate.createSocket(socket, host, port, autoClose));
+		}
+
+		@Override
+		public Socket createSocket(String host, int port) throws IOException {
+			return listen(delegate.createSocket(host, port));
+		}
+
+		@Override
+		public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+			return listen(delegate.createSocket(host, port, localHost, localPort));
+		}
+
+		@Override
+		public Socket createSocket(InetAddress host, int port) throws IOException {
+			return listen(delegate.createSocket(host, port));
+		}
+
+		@Override
+		public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort)
+				throws IOException {
+			return listen(delegate.createSocket(address, port, localAddress, localPort));
+		}
+	}
+}
@@ -4,6 +4,7 @@ import java.util.Collection;
 
 import graves.tim.powermanagement.common.data.BatteryConfigurationSetting;
 import graves.tim.powermanagement.common.data.BatteryEvent;
+import graves.tim.powermanagement.common.data.BatteryState;
 import graves.tim.powermanagement.common.data.DataItem;
 import graves.tim.powermanagement.common.data.DataItemIncorrectBooleanFormatException;
 import graves.tim.powermanagement.common.data.DataItemIncorrectIntegerFormatException;
@@ -11,6 +12,7 @@ import graves.tim.powermanagement.common.data.DataItemIncorrectTypeException;
 import graves.tim.powermanagement.common.data.DataItemNotFoundException;
 import graves.tim.powermanagement.common.data.EventDataItems;
 import graves.tim.powermanagement.common.exceptions.BatteryEventActiveChildTasksException;
+import graves.tim.powermanagement.common.exceptions.BatteryEventAdmissionRejectedException;
 import graves.tim.powermanagement.common.exceptions.BatteryEventEventInProgressException;
 import graves.tim.powermanagement.common.exceptions.BatteryEventEventTypeRequiresSystemBattery;
 import graves.tim.powermanagement.common.exceptions.BatteryEventEventTypeUnsupportedOnSystemBatteryException;
@@ -40,7 +42,6 @@ import lombok.extern.java.Log;
 @ApplicationScoped
 @Log
 public class BatteryControllerImpl implements BatteryController {
-	private long eventIdCounter = 0;
 	@Inject
 	private BatteryManager batteryManager;
 
@@ -73,8 +74,9 @@ public class BatteryControllerImpl implements BatteryController {
 	public BatteryEvent addEvent(String batteryName, BatteryEvent batteryEvent) throws BatteryNotFoundException,
 			BatteryEventUnknownEventTypeException, BatteryEventUnimplementedEventTypeException,
 			BatteryEventEventTypeRequiresSystemBattery, BatteryEventEventTypeUnsupportedOnSystemBatteryException,
-			BatteryEventNotYetSupportedEventTypeException, BatteryEventInPastException {
-		batteryEvent.setEventId(eventIdCounter++);
+			BatteryEventNotYetSupportedEventTypeException, BatteryEventInPastException,
+			BatteryEventAdmissionRejectedException {
+		batteryEvent.setEventId(batteryManager.nextEventId());
 		log.info("Received event " + batteryEvent);
 		return batteryManager.addEvent(batteryName, batteryEvent);
 	}
@@ -86,6 +88,11 @@ public class BatteryControllerImpl implements BatteryController {
 		return batteryManager.getBatteryCurrentChargeLevel(batteryName);
 	}
 
+	@Override
+	public BatteryState getBatteryState(String batteryName) throws BatteryNotFoundException {
+		return batteryManager.getBatteryState(batteryName);
+	}
+
 	@Override
 	public int getBatteryReserveChargeLevel(String batteryName)
 			throws BatteryNotFoundException, BatteryUnauthorisedAccessException, BatteryUnknownSettingException,
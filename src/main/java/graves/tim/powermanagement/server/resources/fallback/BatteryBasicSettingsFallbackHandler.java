@@ -50,6 +50,8 @@ import org.eclipse.microprofile.faulttolerance.FallbackHandler;
 import graves.tim.powermanagement.common.data.BatteryBasicSettings;
 import graves.tim.powermanagement.common.exceptions.BatteryNotFoundException;
 import graves.tim.powermanagement.common.exceptions.BatteryUnauthorisedAccessException;
+import io.helidon.faulttolerance.BulkheadException;
+import io.helidon.faulttolerance.CircuitBreakerOpenException;
 import jakarta.enterprise.context.Dependent;
 import jakarta.json.Json;
 import jakarta.json.JsonArray;
@@ -71,7 +73,9 @@ public class BatteryBasicSettingsFallbackHandler implements FallbackHandler<Batt
 			new ExceptionMap(ConnectException.class.getName(), 424),
 			new ExceptionMap(BatteryNotFoundException.class.getName(), Status.NOT_FOUND.getStatusCode()),
 			new ExceptionMap(BatteryUnauthorisedAccessException.class.getName(), Status.UNAUTHORIZED.getStatusCode()),
-			new ExceptionMap(WebApplicationException.class.getName(), 424));
+			new ExceptionMap(WebApplicationException.class.getName(), 424),
+			new ExceptionMap(CircuitBreakerOpenException.class.getName(), Status.SERVICE_UNAVAILABLE.getStatusCode()),
+			new ExceptionMap(BulkheadException.class.getName(), Status.SERVICE_UNAVAILABLE.getStatusCode()));
 	private final static Map<String, Integer> exceptionsToCode = exceptionToCode.stream()
 			.collect(Collectors.toMap(info -> info.getCause(), info -> info.getStatus()));
 
@@ -0,0 +1,25 @@
+package graves.tim.powermanagement.server.resources.mappers;
+
+import graves.tim.powermanagement.common.exceptions.BatteryEventAdmissionRejectedException;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.ext.ExceptionMapper;
+import jakarta.ws.rs.ext.Provider;
+
+/**
+ * An event that's been refused because of the admission limits is the client
+ * asking for too much, tell them that rather than returning a server error
+ */
+@Provider
+@ApplicationScoped
+public class BatteryEventAdmissionRejectedExceptionMapper
+		implements ExceptionMapper<BatteryEventAdmissionRejectedException> {
+	public final static int TOO_MANY_REQUESTS = 429;
+
+	@Override
+	public Response toResponse(BatteryEventAdmissionRejectedException exception) {
+		return Response.status(TOO_MANY_REQUESTS).entity(exception.getLocalizedMessage())
+				.type(MediaType.TEXT_PLAIN).build();
+	}
+}
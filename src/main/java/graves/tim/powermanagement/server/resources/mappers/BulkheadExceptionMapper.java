@@ -0,0 +1,24 @@
+package graves.tim.powermanagement.server.resources.mappers;
+
+import io.helidon.faulttolerance.BulkheadException;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.Response.Status;
+import jakarta.ws.rs.ext.ExceptionMapper;
+import jakarta.ws.rs.ext.Provider;
+
+/**
+ * The battery already has as many calls outstanding and queued as it's allowed
+ */
+@Provider
+@ApplicationScoped
+public class BulkheadExceptionMapper implements ExceptionMapper<BulkheadException> {
+
+	@Override
+	public Response toResponse(BulkheadException exception) {
+		return Response.status(Status.SERVICE_UNAVAILABLE)
+				.entity("The battery is too busy to handle this request, " + exception.getLocalizedMessage())
+				.type(MediaType.TEXT_PLAIN).build();
+	}
+}
@@ -0,0 +1,25 @@
+package graves.tim.powermanagement.server.resources.mappers;
+
+import io.helidon.faulttolerance.CircuitBreakerOpenException;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.Response.Status;
+import jakarta.ws.rs.ext.ExceptionMapper;
+import jakarta.ws.rs.ext.Provider;
+
+/**
+ * The battery's circuit breaker is open so we didn't even try to talk to it,
+ * that's the battery being unavailable not a problem with the server
+ */
+@Provider
+@ApplicationScoped
+public class CircuitBreakerOpenExceptionMapper implements ExceptionMapper<CircuitBreakerOpenException> {
+
+	@Override
+	public Response toResponse(CircuitBreakerOpenException exception) {
+		return Response.status(Status.SERVICE_UNAVAILABLE)
+				.entity("The battery is currently unavailable, " + exception.getLocalizedMessage())
+				.type(MediaType.TEXT_PLAIN).build();
+	}
+}